@@ -2,8 +2,11 @@ package org.example.aircompany;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+// Фоновые задачи: пересчет и компактизация сводок аналитики (RollupService)
+@EnableScheduling
 public class AircompanyApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,26 @@
+package org.example.aircompany.config;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Вошедший пользователь в контексте Spring Security.
+ * Помимо логина и ролей хранит id пользователя, чтобы CurrentUserArgumentResolver
+ * загружал его по первичному ключу (из кэша второго уровня), а не поиском по имени.
+ */
+public class AuthenticatedUser extends User {
+
+    private final Long userId;
+
+    public AuthenticatedUser(Long userId, String username, String password,
+                             Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.userId = userId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.aircompany.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Параметр метода контроллера типа User — текущий пользователь.
+ * Загружается CurrentUserArgumentResolver не больше одного раза за запрос.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
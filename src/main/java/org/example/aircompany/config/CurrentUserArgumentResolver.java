@@ -0,0 +1,63 @@
+package org.example.aircompany.config;
+
+import org.example.aircompany.model.User;
+import org.example.aircompany.services.UserService;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Подставляет текущего пользователя в параметры контроллеров, помеченные @CurrentUser.
+ * Пользователь загружается один раз и хранится в атрибуте запроса — повторные обращения
+ * в том же запросе (несколько параметров, forward) в БД не идут.
+ * Если в контексте AuthenticatedUser — загрузка по id, иначе (например, сессия,
+ * созданная до появления id в principal) — по имени пользователя.
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private static final String ATTRIBUTE = CurrentUserArgumentResolver.class.getName() + ".user";
+
+    private final UserService userService;
+
+    public CurrentUserArgumentResolver(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && User.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Object cached = webRequest.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (cached != null) {
+            return cached;
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserDetails principal)) {
+            return null;
+        }
+
+        User user;
+        if (principal instanceof AuthenticatedUser authenticated && authenticated.getUserId() != null) {
+            user = userService.findById(authenticated.getUserId())
+                    .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден: " + principal.getUsername()));
+        } else {
+            user = userService.findByUsername(principal.getUsername());
+        }
+        webRequest.setAttribute(ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        return user;
+    }
+}
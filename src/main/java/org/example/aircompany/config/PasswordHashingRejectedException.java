@@ -0,0 +1,12 @@
+package org.example.aircompany.config;
+
+/**
+ * Пул хэширования паролей перегружен: очередь заполнена или хэш не посчитан за отведенное время.
+ * Бросается BoundedPasswordEncoder.encode; сообщение можно показать пользователю.
+ */
+public class PasswordHashingRejectedException extends IllegalStateException {
+
+    public PasswordHashingRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
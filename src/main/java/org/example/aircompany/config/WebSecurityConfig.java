@@ -1,19 +1,24 @@
 package org.example.aircompany.config;
 
+import org.example.aircompany.services.AuthTokenService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.savedrequest.NullRequestCache;
 
 @Configuration
 @EnableWebSecurity
 public class WebSecurityConfig {
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, AuthTokenService tokenService) throws Exception {
         http
                 .authorizeHttpRequests(requests -> requests
                         .requestMatchers("/",
@@ -26,27 +31,54 @@ public class WebSecurityConfig {
                         .requestMatchers("/booking-staff/**").hasAnyAuthority("admin", "booking_staff")
                         .requestMatchers("/pilot/**").hasAnyAuthority("admin", "pilot")
                         .requestMatchers("/passenger/**").hasAnyAuthority("admin", "passenger")
-                        .requestMatchers("/search/flights").hasAnyAuthority("admin", "passenger")
+                        .requestMatchers("/search/flights", "/search/connections", "/search/cities").hasAnyAuthority("admin", "passenger")
                         .anyRequest().authenticated()
                 )
-                .formLogin(form -> form
-                        .loginPage("/login")
-                        .defaultSuccessUrl("/dashboard", true)
-                        .permitAll()
-                )
+                .formLogin(form -> {
+                    form
+                            .loginPage("/login")
+                            .defaultSuccessUrl("/dashboard", true)
+                            .permitAll();
+                    if (tokenService.isEnabled()) {
+                        // Вместо сессии — cookie с токенами, затем тот же переход на /dashboard
+                        SimpleUrlAuthenticationSuccessHandler redirect = new SimpleUrlAuthenticationSuccessHandler("/dashboard");
+                        redirect.setAlwaysUseDefaultTargetUrl(true);
+                        form.successHandler((request, response, authentication) -> {
+                            tokenService.issue((AuthenticatedUser) authentication.getPrincipal(), response);
+                            redirect.onAuthenticationSuccess(request, response, authentication);
+                        });
+                    }
+                })
                 .logout(logout -> logout
                         // Используем .logoutUrl() или, для более явного соответствия старому коду:
                         .logoutUrl("/logout")
                         .logoutSuccessUrl("/")
+                        // Токены отзываются, а не только удаляются из браузера: копия cookie перестает действовать
+                        .addLogoutHandler((request, response, authentication) -> tokenService.logout(request))
+                        .deleteCookies(AuthTokenService.ACCESS_COOKIE, AuthTokenService.REFRESH_COOKIE)
                         .permitAll()
                 )
                 .csrf(csrf -> csrf.disable()); // Временно отключаем CSRF для упрощения тестирования API
 
+        // Режим без сессий: любой узел проверяет вход по подписи cookie, контекст живет только в запросе
+        if (tokenService.isEnabled()) {
+            http
+                    .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                    .securityContext(context -> context.securityContextRepository(new RequestAttributeSecurityContextRepository()))
+                    .requestCache(cache -> cache.requestCache(new NullRequestCache()))
+                    .addFilterBefore(new TokenAuthenticationFilter(tokenService), UsernamePasswordAuthenticationFilter.class);
+        }
+
         return http.build();
     }
 
+    // BCrypt на отдельном пуле; threads = 0 — по числу ядер
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(@Value("${aircompany.password.bcrypt-strength:10}") int strength,
+                                                  @Value("${aircompany.password.threads:0}") int threads,
+                                                  @Value("${aircompany.password.queue-capacity:64}") int queueCapacity,
+                                                  @Value("${aircompany.password.timeout-ms:3000}") long timeoutMillis) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(strength, poolSize, queueCapacity, timeoutMillis);
     }
 }
\ No newline at end of file
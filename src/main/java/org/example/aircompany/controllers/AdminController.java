@@ -1,53 +1,70 @@
 package org.example.aircompany.controllers;
 
+import org.example.aircompany.config.BoundedPasswordEncoder;
+import org.example.aircompany.config.CurrentUser;
+import org.example.aircompany.model.Aircraft;
 import org.example.aircompany.model.User;
 import org.example.aircompany.model.UserRole;
 import org.example.aircompany.services.*;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.util.List;
+
 @Controller
 @RequestMapping("/admin")
 public class AdminController {
 
+    // Самый длинный период аналитики, который можно запросить одной страницей
+    private static final int MAX_ROLLUP_DAYS = 92;
+
     private final UserService userService;
-    private final AircraftService aircraftService;
-    private final FlightService flightService;
-    private final BookingService bookingService;
-    private final FlightLogService flightLogService;
+    private final UserCleanupService userCleanupService;
+    private final StatsService statsService;
+    private final RollupService rollupService;
+    private final FlightSearchCache flightSearchCache;
+    private final EntityCacheService entityCacheService;
+    private final CustomUserDetailsService userDetailsService;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final FlightStatusScheduler flightStatusScheduler;
 
     public AdminController(UserService userService,
-                           AircraftService aircraftService,
-                           FlightService flightService,
-                           BookingService bookingService,
-                           FlightLogService flightLogService) {
+                           UserCleanupService userCleanupService,
+                           StatsService statsService,
+                           RollupService rollupService,
+                           FlightSearchCache flightSearchCache,
+                           EntityCacheService entityCacheService,
+                           CustomUserDetailsService userDetailsService,
+                           BoundedPasswordEncoder passwordEncoder,
+                           FlightStatusScheduler flightStatusScheduler) {
 
         this.userService = userService;
-        this.aircraftService = aircraftService;
-        this.flightService = flightService;
-        this.bookingService = bookingService;
-        this.flightLogService = flightLogService;
+        this.userCleanupService = userCleanupService;
+        this.statsService = statsService;
+        this.rollupService = rollupService;
+        this.flightSearchCache = flightSearchCache;
+        this.entityCacheService = entityCacheService;
+        this.userDetailsService = userDetailsService;
+        this.passwordEncoder = passwordEncoder;
+        this.flightStatusScheduler = flightStatusScheduler;
     }
 
     // ------------------ УПРАВЛЕНИЕ РОЛЯМИ ------------------
 
     @GetMapping("/users")
     public String listUsers(Model model) {
-        model.addAttribute("users", userService.findAllUsers());
+        model.addAttribute("users", userService.findUserList());
         model.addAttribute("roles", UserRole.values());
+        model.addAttribute("cleanup", userCleanupService.getProgress());
         return "admin/users";
     }
 
     @PostMapping("/users/{id}/update-role")
     public String updateRole(@PathVariable Long id,
                              @RequestParam("role") UserRole newRole,
-                             @AuthenticationPrincipal UserDetails adminDetails) {
-
-        // Загружаем администратора, который меняет роль
-        User admin = userService.findByUsername(adminDetails.getUsername());
+                             @CurrentUser User admin) {
 
         userService.updateUserRole(id, newRole, admin);
 
@@ -56,10 +73,7 @@ public class AdminController {
 
     @PostMapping("/users/{id}/delete")
     public String deleteUser(@PathVariable Long id,
-                            @AuthenticationPrincipal UserDetails adminDetails) {
-
-        // Загружаем администратора
-        User admin = userService.findByUsername(adminDetails.getUsername());
+                            @CurrentUser User admin) {
 
         // Проверяем, что админ не пытается удалить самого себя
         if (admin.getUserId().equals(id)) {
@@ -71,6 +85,27 @@ public class AdminController {
         return "redirect:/admin/users";
     }
 
+    // Пакетное удаление выбранных пользователей в фоне; ход выполнения — на странице пользователей
+    @PostMapping("/users/delete-batch")
+    public String deleteUsers(@RequestParam(value = "ids", required = false) List<Long> ids,
+                              @CurrentUser User admin,
+                              Model model) {
+        try {
+            userCleanupService.start(ids, admin.getUserId());
+        } catch (IllegalStateException e) {
+            model.addAttribute("error", e.getMessage());
+            return listUsers(model);
+        }
+        return "redirect:/admin/users";
+    }
+
+    /** Ход пакетного удаления пользователей (JSON) */
+    @GetMapping("/stats/user-cleanup")
+    @ResponseBody
+    public java.util.Map<String, Object> userCleanupProgress() {
+        return userCleanupService.getProgress();
+    }
+
 
 
     // ------------------ СТАТИСТИКА ------------------
@@ -78,25 +113,138 @@ public class AdminController {
     @GetMapping("/stats")
     public String viewStats(Model model) {
 
+        // Счетчики ведет StatsService — страница не читает таблицы целиком
+
         // Пользователи
-        model.addAttribute("totalUsers", userService.findAllUsers().size());
-        model.addAttribute("totalPassengers", userService.countByRole(UserRole.passenger));
-        model.addAttribute("totalPilots", userService.countByRole(UserRole.pilot));
-        model.addAttribute("totalStaff", userService.countByRole(UserRole.booking_staff));
-        model.addAttribute("totalAdmins", userService.countByRole(UserRole.admin));
+        model.addAttribute("totalUsers", statsService.countUsers());
+        model.addAttribute("totalPassengers", statsService.countUsersByRole(UserRole.passenger));
+        model.addAttribute("totalPilots", statsService.countUsersByRole(UserRole.pilot));
+        model.addAttribute("totalStaff", statsService.countUsersByRole(UserRole.booking_staff));
+        model.addAttribute("totalAdmins", statsService.countUsersByRole(UserRole.admin));
 
         // Самолёты
-        model.addAttribute("aircraftActive", aircraftService.countByStatus("active"));
-        model.addAttribute("aircraftMaintenance", aircraftService.countByStatus("in_maintenance"));
-        model.addAttribute("aircraftInFlight", aircraftService.countByStatus("in_flight"));
+        model.addAttribute("aircraftActive", statsService.countAircraftByStatus(Aircraft.AircraftStatus.active));
+        model.addAttribute("aircraftMaintenance", statsService.countAircraftByStatus(Aircraft.AircraftStatus.in_maintenance));
+        model.addAttribute("aircraftInFlight", statsService.countAircraftByStatus(Aircraft.AircraftStatus.in_flight));
 
         // Рейсы и бронирования
-        model.addAttribute("totalFlights", flightService.findAllFlights().size());
-        model.addAttribute("totalBookings", bookingService.findAllBookings().size());
+        model.addAttribute("totalFlights", statsService.countFlights());
+        model.addAttribute("totalBookings", statsService.countBookings());
 
         // Пилотские логи
-        model.addAttribute("totalFlightLogs", flightLogService.findAll().size());
+        model.addAttribute("totalFlightLogs", statsService.countFlightLogs());
+
+        // Кэш поиска рейсов
+        model.addAttribute("searchCache", flightSearchCache.getStats());
+
+        // Кэш второго уровня (самолеты, пользователи)
+        model.addAttribute("entityCache", entityCacheService.getStats());
+
+        // Кэш данных для входа
+        model.addAttribute("userDetailsCache", userDetailsService.getStats());
+
+        // Пул хэширования паролей
+        model.addAttribute("passwordHashing", passwordEncoder.getStats());
+
+        // Смена статусов рейсов по времени
+        model.addAttribute("flightStatus", flightStatusScheduler.getStats());
 
         return "admin/stats";
     }
+
+    /** Счетчики кэша поиска рейсов (JSON) — для подбора размера и времени жизни кэша */
+    @GetMapping("/stats/search-cache")
+    @ResponseBody
+    public java.util.Map<String, Object> searchCacheStats() {
+        return flightSearchCache.getStats();
+    }
+
+    /** Счетчики кэша второго уровня Hibernate по регионам (JSON) */
+    @GetMapping("/stats/entity-cache")
+    @ResponseBody
+    public java.util.Map<String, java.util.Map<String, Object>> entityCacheStats() {
+        return entityCacheService.getStats();
+    }
+
+    /** Счетчики кэша данных для входа (JSON) */
+    @GetMapping("/stats/user-details-cache")
+    @ResponseBody
+    public java.util.Map<String, Object> userDetailsCacheStats() {
+        return userDetailsService.getStats();
+    }
+
+    /** Пул хэширования паролей (JSON): очередь, отказы, среднее время хэша — для подбора стоимости BCrypt */
+    @GetMapping("/stats/password-hashing")
+    @ResponseBody
+    public java.util.Map<String, Object> passwordHashingStats() {
+        return passwordEncoder.getStats();
+    }
+
+    /** Смена статусов рейсов по времени (JSON): очередь переходов и задержка их обработки */
+    @GetMapping("/stats/flight-status")
+    @ResponseBody
+    public java.util.Map<String, Object> flightStatusStats() {
+        return flightStatusScheduler.getStats();
+    }
+
+    // ------------------ АНАЛИТИКА (СВОДКИ) ------------------
+
+    @GetMapping("/rollups")
+    public String viewRollups(@RequestParam(required = false) LocalDate from,
+                              @RequestParam(required = false) LocalDate to,
+                              @RequestParam(required = false) Long flightId,
+                              Model model) {
+        LocalDate[] period = rollupPeriod(from, to);
+        model.addAttribute("from", period[0]);
+        model.addAttribute("to", period[1]);
+        model.addAttribute("routes", rollupService.getRouteLoad(period[0], period[1]));
+        model.addAttribute("aircraft", rollupService.getAircraftUtilization(period[0], period[1]));
+        model.addAttribute("bookingsByDay", rollupService.getBookingsByDay(period[0], period[1]));
+        model.addAttribute("flightId", flightId);
+        if (flightId != null) {
+            model.addAttribute("flightBookings", rollupService.getFlightBookings(flightId));
+        }
+        model.addAttribute("status", rollupService.getStatus());
+        return "admin/rollups";
+    }
+
+    /** Сводки аналитики за период (JSON) — читаются только таблицы сводок */
+    @GetMapping("/stats/rollups")
+    @ResponseBody
+    public java.util.Map<String, Object> rollupStats(@RequestParam(required = false) LocalDate from,
+                                                     @RequestParam(required = false) LocalDate to,
+                                                     @RequestParam(required = false) Long flightId) {
+        LocalDate[] period = rollupPeriod(from, to);
+        java.util.Map<String, Object> result = new java.util.LinkedHashMap<>();
+        result.put("from", period[0]);
+        result.put("to", period[1]);
+        result.put("routes", rollupService.getRouteLoad(period[0], period[1]));
+        result.put("aircraft", rollupService.getAircraftUtilization(period[0], period[1]));
+        result.put("bookingsByDay", rollupService.getBookingsByDay(period[0], period[1]));
+        if (flightId != null) {
+            result.put("flightBookings", rollupService.getFlightBookings(flightId));
+        }
+        result.put("status", rollupService.getStatus());
+        return result;
+    }
+
+    // Пересчитать все сводки сейчас, не дожидаясь ночной компактизации
+    @PostMapping("/rollups/compact")
+    public String compactRollups() {
+        rollupService.compact();
+        return "redirect:/admin/rollups";
+    }
+
+    // По умолчанию — неделя назад и месяц вперед; период не длиннее MAX_ROLLUP_DAYS
+    private static LocalDate[] rollupPeriod(LocalDate from, LocalDate to) {
+        LocalDate start = from != null ? from : LocalDate.now().minusDays(7);
+        LocalDate end = to != null ? to : start.plusDays(37);
+        if (end.isBefore(start)) {
+            end = start;
+        }
+        if (end.isAfter(start.plusDays(MAX_ROLLUP_DAYS - 1))) {
+            end = start.plusDays(MAX_ROLLUP_DAYS - 1);
+        }
+        return new LocalDate[]{start, end};
+    }
 }
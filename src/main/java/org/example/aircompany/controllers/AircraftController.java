@@ -1,5 +1,6 @@
 package org.example.aircompany.controllers;
 
+import org.example.aircompany.dto.AircraftListItem;
 import org.example.aircompany.model.Aircraft;
 import org.example.aircompany.services.AircraftService;
 import org.springframework.stereotype.Controller;
@@ -20,7 +21,7 @@ public class AircraftController {
     /** 1. Список всех самолетов (Read All) */
     @GetMapping
     public String listAircrafts(Model model) {
-        List<Aircraft> aircrafts = aircraftService.findAllAircrafts();
+        List<AircraftListItem> aircrafts = aircraftService.findAircraftList();
         model.addAttribute("aircrafts", aircrafts);
         return "aircrafts/list";
     }
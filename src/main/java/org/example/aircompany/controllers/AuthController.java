@@ -1,5 +1,6 @@
 package org.example.aircompany.controllers;
 
+import org.example.aircompany.config.PasswordHashingRejectedException;
 import org.example.aircompany.model.User;
 import org.example.aircompany.services.UserService;
 import org.springframework.stereotype.Controller;
@@ -36,11 +37,15 @@ public class AuthController {
     @PostMapping("/register")
     public String registerUser(@ModelAttribute("user") User user, Model model) {
 
-        if (userService.registerNewPassenger(user)) {
-            return "redirect:/login?success";
-        } else {
+        try {
+            if (userService.registerNewPassenger(user)) {
+                return "redirect:/login?success";
+            }
             model.addAttribute("registrationError", "Пользователь с таким именем уже существует.");
-            return "auth/register";
+        } catch (PasswordHashingRejectedException e) {
+            // Пул хэширования паролей перегружен
+            model.addAttribute("registrationError", e.getMessage());
         }
+        return "auth/register";
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package org.example.aircompany.controllers;
 
+import org.example.aircompany.dto.BookingListItem;
 import org.example.aircompany.model.Booking;
 import org.example.aircompany.services.BookingService;
 import org.example.aircompany.services.FlightService;
@@ -26,7 +27,7 @@ public class BookingController {
     /** 1. Список всех бронирований (Read All) */
     @GetMapping
     public String listBookings(Model model) {
-        List<Booking> bookings = bookingService.findAllBookings();
+        List<BookingListItem> bookings = bookingService.findBookingList();
         model.addAttribute("bookings", bookings);
         return "bookings/list";
     }
@@ -65,17 +66,8 @@ public class BookingController {
         if (booking.getFlight() != null) {
             List<String> occupiedSeats = bookingService.getOccupiedSeats(booking.getFlight());
             model.addAttribute("occupiedSeats", occupiedSeats);
-            Integer seatCapacity = booking.getFlight().getAircraft().getSeatCapacity() != null 
-                    ? booking.getFlight().getAircraft().getSeatCapacity() 
-                    : 30;
-            // Генерируем список всех доступных мест
-            List<String> availableSeats = new java.util.ArrayList<>();
-            String[] letters = {"A", "B", "C", "D", "E", "F"};
-            for (int row = 1; row <= seatCapacity; row++) {
-                for (String letter : letters) {
-                    availableSeats.add(row + letter);
-                }
-            }
+            // Все места салона (количество рядов берется из вместимости самолета)
+            List<String> availableSeats = bookingService.getAllSeats(booking.getFlight());
             model.addAttribute("availableSeats", availableSeats);
         }
 
@@ -101,16 +93,8 @@ public class BookingController {
             if (booking.getFlight() != null) {
                 List<String> occupiedSeats = bookingService.getOccupiedSeats(booking.getFlight());
                 model.addAttribute("occupiedSeats", occupiedSeats);
-                Integer seatCapacity = booking.getFlight().getAircraft().getSeatCapacity() != null 
-                        ? booking.getFlight().getAircraft().getSeatCapacity() 
-                        : 30;
-                List<String> availableSeats = new java.util.ArrayList<>();
-                String[] letters = {"A", "B", "C", "D", "E", "F"};
-                for (int row = 1; row <= seatCapacity; row++) {
-                    for (String letter : letters) {
-                        availableSeats.add(row + letter);
-                    }
-                }
+                // Все места салона (количество рядов берется из вместимости самолета)
+                List<String> availableSeats = bookingService.getAllSeats(booking.getFlight());
                 model.addAttribute("availableSeats", availableSeats);
             }
             model.addAttribute("pageTitle", booking.getBookingId() != null 
@@ -135,19 +119,9 @@ public class BookingController {
                 .orElseThrow(() -> new IllegalArgumentException("Рейс не найден"));
         
         List<String> occupiedSeats = bookingService.getOccupiedSeats(flight);
-        Integer seatCapacity = flight.getAircraft().getSeatCapacity() != null 
-                ? flight.getAircraft().getSeatCapacity() 
-                : 30;
-        
-        // Генерируем список всех доступных мест
-        List<String> availableSeats = new java.util.ArrayList<>();
-        String[] letters = {"A", "B", "C", "D", "E", "F"};
-        for (int row = 1; row <= seatCapacity; row++) {
-            for (String letter : letters) {
-                availableSeats.add(row + letter);
-            }
-        }
-        
+        // Все места салона (количество рядов берется из вместимости самолета)
+        List<String> availableSeats = bookingService.getAllSeats(flight);
+
         java.util.Map<String, Object> result = new java.util.HashMap<>();
         result.put("availableSeats", availableSeats);
         result.put("occupiedSeats", occupiedSeats);
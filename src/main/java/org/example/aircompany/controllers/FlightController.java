@@ -1,15 +1,21 @@
 package org.example.aircompany.controllers;
 
+import org.example.aircompany.dto.FlightListItem;
 import org.example.aircompany.model.Aircraft;
 import org.example.aircompany.model.Flight;
 import org.example.aircompany.model.User;
 import org.example.aircompany.services.AircraftService;
+import org.example.aircompany.services.FlightAssignmentException;
 import org.example.aircompany.services.FlightService;
+import org.example.aircompany.services.ParallelQueryService;
 import org.example.aircompany.services.UserService;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 @Controller
 @RequestMapping("/booking-staff/flights") // Все методы доступны по пути /booking-staff/flights
 public class FlightController {
@@ -17,18 +23,21 @@ public class FlightController {
     private final FlightService flightService;
     private final AircraftService aircraftService;
     private final UserService userService;
+    private final ParallelQueryService parallelQueryService;
 
     // Зависимости
-    public FlightController(FlightService flightService, AircraftService aircraftService, UserService userService) {
+    public FlightController(FlightService flightService, AircraftService aircraftService, UserService userService,
+                            ParallelQueryService parallelQueryService) {
         this.flightService = flightService;
         this.aircraftService = aircraftService;
         this.userService = userService;
+        this.parallelQueryService = parallelQueryService;
     }
 
     /** 1. Список всех рейсов (Read All) */
     @GetMapping
     public String listFlights(Model model) {
-        List<Flight> flights = flightService.findAllFlights();
+        List<FlightListItem> flights = flightService.findFlightList();
         model.addAttribute("flights", flights);
         return "flights/list";
     }
@@ -37,48 +46,36 @@ public class FlightController {
     @GetMapping("/new")
     public String showFlightForm(Model model) {
         // Для создания нового рейса
-        model.addAttribute("flight", new Flight());
-        // Добавляем список доступных самолетов (только active) для выпадающего списка
-        List<Aircraft> availableAircrafts = aircraftService.findAllAircrafts().stream()
-                .filter(a -> a.getStatus() == Aircraft.AircraftStatus.active)
-                .toList();
-
-        model.addAttribute("aircrafts", availableAircrafts);
-        // Добавляем список доступных пилотов (только те, кто не назначен на незавершенные рейсы)
+        Flight flight = new Flight();
+        model.addAttribute("flight", flight);
 
-        List<User> availablePilots = flightService.getAvailablePilots(userService.findPilots(), null);
-        model.addAttribute("pilots", availablePilots);
+        // Самолеты и пилоты — параллельно; время нового рейса еще не задано, поэтому предлагаются все пилоты
+        // и все самолеты не на обслуживании, пересечения по времени проверяются при сохранении
+        try (ParallelQueryService.Scope scope = parallelQueryService.open()) {
+            Supplier<List<Aircraft>> aircrafts = scope.fork(aircraftService::findAllAircrafts);
+            Supplier<List<User>> pilots = scope.fork(userService::findPilots);
+            scope.join();
+            addFormOptions(model, flight, aircrafts.get(), flightService.getAvailablePilots(pilots.get(), flight));
+        }
         model.addAttribute("pageTitle", "Добавить новый рейс");
         return "flights/form";
     }
 
     @GetMapping("/edit/{id}")
     public String showEditFlightForm(@PathVariable("id") Long id, Model model) {
-        Flight flight = flightService.findFlightById(id)
-                .orElseThrow(() -> new IllegalArgumentException("Неверный ID рейса:" + id));
-
-        model.addAttribute("flight", flight);
-        // Показываем все самолеты, но текущий самолет рейса всегда должен быть доступен
-        List<Aircraft> availableAircrafts = aircraftService.findAllAircrafts().stream()
-                .filter(a -> a.getStatus() == Aircraft.AircraftStatus.active 
-                          || a.getAircraftId().equals(flight.getAircraft().getAircraftId()))
-                .toList();
-
-        model.addAttribute("aircrafts", availableAircrafts);
-
-        // Показываем доступных пилотов + текущего пилота рейса (если он есть)
-        List<User> allPilots = userService.findPilots();
-        List<User> availablePilots = flightService.getAvailablePilots(allPilots, id);
-
-        // Если у рейса есть пилот, добавляем его в список, если его там еще нет
-        if (flight.getPilot() != null) {
-            boolean pilotAlreadyInList = availablePilots.stream()
-                    .anyMatch(p -> p.getUserId().equals(flight.getPilot().getUserId()));
-            if (!pilotAlreadyInList) {
-                availablePilots.add(flight.getPilot());
-            }
+        // Рейс, самолеты и пилоты не зависят друг от друга — загружаются параллельно;
+        // свободные на время рейса самолеты и пилоты отбираются по расписаниям в памяти
+        try (ParallelQueryService.Scope scope = parallelQueryService.open()) {
+            Supplier<Optional<Flight>> flightById = scope.fork(() -> flightService.findFlightById(id));
+            Supplier<List<Aircraft>> aircrafts = scope.fork(aircraftService::findAllAircrafts);
+            Supplier<List<User>> pilots = scope.fork(userService::findPilots);
+            scope.join();
+
+            Flight flight = flightById.get()
+                    .orElseThrow(() -> new IllegalArgumentException("Неверный ID рейса:" + id));
+            model.addAttribute("flight", flight);
+            addFormOptions(model, flight, aircrafts.get(), flightService.getAvailablePilots(pilots.get(), flight));
         }
-        model.addAttribute("pilots", availablePilots);
         model.addAttribute("pageTitle", "Редактировать рейс ID: " + id);
         return "flights/form";
     }
@@ -96,31 +93,7 @@ public class FlightController {
         
         // Нельзя назначать самолет со статусом in_maintenance
         if (aircraft.getStatus() == Aircraft.AircraftStatus.in_maintenance) {
-            model.addAttribute("error", "Нельзя назначить самолет со статусом 'in_maintenance' на рейс");
-            model.addAttribute("flight", flight);
-
-            List<Aircraft> availableAircrafts = aircraftService.findAllAircrafts().stream()
-                    .filter(a -> a.getStatus() == Aircraft.AircraftStatus.active 
-                              || (flight.getAircraft() != null && a.getAircraftId().equals(flight.getAircraft().getAircraftId())))
-                    .toList();
-            model.addAttribute("aircrafts", availableAircrafts);
-
-            // Добавляем доступных пилотов
-            List<User> allPilots = userService.findPilots();
-            List<User> availablePilots = flightService.getAvailablePilots(allPilots, flight.getFlightId());
-
-            // Если у рейса есть пилот, добавляем его в список, если его там еще нет
-            if (flight.getPilot() != null) {
-                boolean pilotAlreadyInList = availablePilots.stream()
-                        .anyMatch(p -> p.getUserId().equals(flight.getPilot().getUserId()));
-                if (!pilotAlreadyInList) {
-                    availablePilots.add(flight.getPilot());
-                }
-            }
-
-            model.addAttribute("pilots", availablePilots);
-            model.addAttribute("pageTitle", flight.getFlightId() == null ? "Добавить новый рейс" : "Редактировать рейс ID: " + flight.getFlightId());
-            return "flights/form";
+            return showFormWithError(flight, "Нельзя назначить самолет со статусом 'in_maintenance' на рейс", model);
         }
 
         flight.setAircraft(aircraft);
@@ -128,69 +101,14 @@ public class FlightController {
         // Проверяем, что время отправления раньше времени прибытия
         if (flight.getDepartureTime() != null && flight.getArrivalTime() != null) {
             if (!flight.getDepartureTime().isBefore(flight.getArrivalTime())) {
-                model.addAttribute("error", "Время отправления должно быть раньше времени прибытия");
-                model.addAttribute("flight", flight);
-
-                List<Aircraft> availableAircrafts = aircraftService.findAllAircrafts().stream()
-                        .filter(a -> a.getStatus() == Aircraft.AircraftStatus.active 
-                                  || (flight.getAircraft() != null && a.getAircraftId().equals(flight.getAircraft().getAircraftId())))
-                        .toList();
-                model.addAttribute("aircrafts", availableAircrafts);
-
-                // Добавляем доступных пилотов
-                List<User> allPilots = userService.findPilots();
-                List<User> availablePilots = flightService.getAvailablePilots(allPilots, flight.getFlightId());
-
-                // Если у рейса есть пилот, добавляем его в список, если его там еще нет
-                if (flight.getPilot() != null) {
-                    boolean pilotAlreadyInList = availablePilots.stream()
-                            .anyMatch(p -> p.getUserId().equals(flight.getPilot().getUserId()));
-                    if (!pilotAlreadyInList) {
-                        availablePilots.add(flight.getPilot());
-                    }
-                }
-
-                model.addAttribute("pilots", availablePilots);
-                model.addAttribute("pageTitle", flight.getFlightId() == null ? "Добавить новый рейс" : "Редактировать рейс ID: " + flight.getFlightId());
-                return "flights/form";
+                return showFormWithError(flight, "Время отправления должно быть раньше времени прибытия", model);
             }
         }
 
-        // пилот - проверяем только если пилот выбран
+        // пилот; занятость самолета и пилота, лимиты налета проверяет saveFlight под блокировкой
         if (pilotId != null) {
             User pilot = userService.findById(pilotId)
                     .orElseThrow(() -> new IllegalArgumentException("Пилот не найден"));
-            
-            // Проверяем, может ли пилот быть назначен на этот рейс
-            if (!flightService.canAssignPilotToFlight(pilot, flight.getFlightId())) {
-                model.addAttribute("error", "Пилот уже назначен на другой незавершенный рейс и не может быть назначен на этот рейс");
-                model.addAttribute("flight", flight);
-
-                List<Aircraft> availableAircrafts = aircraftService.findAllAircrafts().stream()
-                        .filter(a -> a.getStatus() == Aircraft.AircraftStatus.active 
-                                  || (flight.getAircraft() != null && a.getAircraftId().equals(flight.getAircraft().getAircraftId())))
-                        .toList();
-
-                model.addAttribute("aircrafts", availableAircrafts);
-
-                // Добавляем доступных пилотов
-                List<User> allPilots = userService.findPilots();
-                List<User> availablePilots = flightService.getAvailablePilots(allPilots, flight.getFlightId());
-
-                // Если у рейса есть пилот, добавляем его в список, если его там еще нет
-                if (flight.getPilot() != null) {
-                    boolean pilotAlreadyInList = availablePilots.stream()
-                            .anyMatch(p -> p.getUserId().equals(flight.getPilot().getUserId()));
-                    if (!pilotAlreadyInList) {
-                        availablePilots.add(flight.getPilot());
-                    }
-                }
-
-                model.addAttribute("pilots", availablePilots);
-                model.addAttribute("pageTitle", flight.getFlightId() == null ? "Добавить новый рейс" : "Редактировать рейс ID: " + flight.getFlightId());
-                return "flights/form";
-            }
-            
             flight.setPilot(pilot);
         } else {
             // Если пилот не выбран, сбрасываем его
@@ -202,7 +120,13 @@ public class FlightController {
             flight.setStatus(Flight.FlightStatus.scheduled);
         }
 
-        flightService.saveFlight(flight);
+        try {
+            flightService.saveFlight(flight);
+        } catch (FlightAssignmentException e) {
+            return showFormWithError(flight, e.getMessage(), model);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return showFormWithError(flight, "Рейс был изменен другим пользователем. Обновите страницу и повторите попытку", model);
+        }
 
         return "redirect:/booking-staff/flights";
     }
@@ -213,4 +137,45 @@ public class FlightController {
         flightService.deleteFlight(id);
         return "redirect:/booking-staff/flights";
     }
+
+    // Повторно показывает форму рейса с сообщением об ошибке
+    private String showFormWithError(Flight flight, String error, Model model) {
+        model.addAttribute("error", error);
+        model.addAttribute("flight", flight);
+
+        try (ParallelQueryService.Scope scope = parallelQueryService.open()) {
+            Supplier<List<Aircraft>> aircrafts = scope.fork(aircraftService::findAllAircrafts);
+            Supplier<List<User>> pilots = scope.fork(userService::findPilots);
+            scope.join();
+            addFormOptions(model, flight, aircrafts.get(), flightService.getAvailablePilots(pilots.get(), flight));
+        }
+        model.addAttribute("pageTitle", flight.getFlightId() == null ? "Добавить новый рейс" : "Редактировать рейс ID: " + flight.getFlightId());
+        return "flights/form";
+    }
+
+    // Выпадающие списки формы: свободные на время рейса самолеты и пилоты.
+    // Текущие самолет и пилот рейса остаются в списках, даже если сейчас недоступны
+    private void addFormOptions(Model model, Flight flight, List<Aircraft> allAircrafts, List<User> availablePilots) {
+        List<Aircraft> availableAircrafts = flightService.getAvailableAircraft(allAircrafts, flight);
+        if (flight.getAircraft() != null) {
+            Long currentId = flight.getAircraft().getAircraftId();
+            if (availableAircrafts.stream().noneMatch(a -> a.getAircraftId().equals(currentId))) {
+                allAircrafts.stream()
+                        .filter(a -> a.getAircraftId().equals(currentId))
+                        .findFirst()
+                        .ifPresent(availableAircrafts::add);
+            }
+        }
+        model.addAttribute("aircrafts", availableAircrafts);
+
+        // Если у рейса есть пилот, добавляем его в список, если его там еще нет
+        if (flight.getPilot() != null) {
+            boolean pilotAlreadyInList = availablePilots.stream()
+                    .anyMatch(p -> p.getUserId().equals(flight.getPilot().getUserId()));
+            if (!pilotAlreadyInList) {
+                availablePilots.add(flight.getPilot());
+            }
+        }
+        model.addAttribute("pilots", availablePilots);
+    }
 }
\ No newline at end of file
@@ -1,14 +1,12 @@
 package org.example.aircompany.controllers;
 
+import org.example.aircompany.config.CurrentUser;
 import org.example.aircompany.dto.PassengerBookingForm;
 import org.example.aircompany.model.Flight;
 import org.example.aircompany.model.User;
 import org.example.aircompany.services.BookingService;
 import org.example.aircompany.services.FlightService;
 import org.example.aircompany.services.PassengerService;
-import org.example.aircompany.services.UserService;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -21,23 +19,19 @@ public class PassengerBookingController {
 
     private final BookingService bookingService;
     private final FlightService flightService;
-    private final UserService userService;
     private final PassengerService passengerService;
 
     public PassengerBookingController(BookingService bookingService,
                                       FlightService flightService,
-                                      UserService userService,
                                       PassengerService passengerService) {
         this.bookingService = bookingService;
         this.flightService = flightService;
-        this.userService = userService;
         this.passengerService = passengerService;
     }
 
     // Список бронирований
     @GetMapping
-    public String myBookings(@AuthenticationPrincipal UserDetails userDetails, Model model) {
-        User passenger = userService.findByUsername(userDetails.getUsername());
+    public String myBookings(@CurrentUser User passenger, Model model) {
         model.addAttribute("bookings", bookingService.findBookingsByUser(passenger));
         return "passenger/bookings";
     }
@@ -56,19 +50,8 @@ public class PassengerBookingController {
         List<String> occupiedSeats = bookingService.getOccupiedSeats(flight);
         model.addAttribute("occupiedSeats", occupiedSeats);
         
-        // Получаем количество мест в самолете
-        Integer seatCapacity = flight.getAircraft().getSeatCapacity() != null 
-                ? flight.getAircraft().getSeatCapacity() 
-                : 30; // По умолчанию 30 мест
-        
-        // Генерируем список всех доступных мест
-        List<String> availableSeats = new java.util.ArrayList<>();
-        String[] letters = {"A", "B", "C", "D", "E", "F"};
-        for (int row = 1; row <= seatCapacity; row++) {
-            for (String letter : letters) {
-                availableSeats.add(row + letter);
-            }
-        }
+        // Все места салона (количество рядов берется из вместимости самолета)
+        List<String> availableSeats = bookingService.getAllSeats(flight);
         model.addAttribute("availableSeats", availableSeats);
         
         return "passenger/booking_form";
@@ -77,10 +60,9 @@ public class PassengerBookingController {
     // Подтвердить бронирование
     @PostMapping("/create")
     public String createBooking(@ModelAttribute("form") PassengerBookingForm form,
-                                @AuthenticationPrincipal UserDetails userDetails,
+                                @CurrentUser User user,
                                 Model model) {
 
-        User user = userService.findByUsername(userDetails.getUsername());
         Flight flight = flightService.findFlightById(form.getFlightId())
                 .orElseThrow(() -> new RuntimeException("Рейс не найден"));
 
@@ -97,18 +79,8 @@ public class PassengerBookingController {
 
             List<String> occupiedSeats = bookingService.getOccupiedSeats(flightForForm);
             model.addAttribute("occupiedSeats", occupiedSeats);
-            Integer seatCapacity = flightForForm.getAircraft().getSeatCapacity() != null 
-                    ? flightForForm.getAircraft().getSeatCapacity() 
-                    : 30;
-
-            // Генерируем список всех доступных мест
-            List<String> availableSeats = new java.util.ArrayList<>();
-            String[] letters = {"A", "B", "C", "D", "E", "F"};
-            for (int row = 1; row <= seatCapacity; row++) {
-                for (String letter : letters) {
-                    availableSeats.add(row + letter);
-                }
-            }
+            // Все места салона (количество рядов берется из вместимости самолета)
+            List<String> availableSeats = bookingService.getAllSeats(flightForForm);
             model.addAttribute("availableSeats", availableSeats);
             return "passenger/booking_form";
         }
@@ -1,17 +1,20 @@
 package org.example.aircompany.controllers;
 
+import org.example.aircompany.config.CurrentUser;
+import org.example.aircompany.dto.FlightSearchPage;
+import org.example.aircompany.dto.Itinerary;
 import org.example.aircompany.model.Booking;
-import org.example.aircompany.model.Flight;
 import org.example.aircompany.model.User;
 import org.example.aircompany.services.BookingService;
+import org.example.aircompany.services.CityIndexService;
+import org.example.aircompany.services.ConnectionSearchService;
+import org.example.aircompany.services.FlightSearchService;
 import org.example.aircompany.services.FlightService;
-import org.example.aircompany.services.UserService;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -21,16 +24,22 @@ import java.util.stream.Collectors;
 @Controller
 public class PassengerFlightController {
 
+    // Сколько подсказок максимум отдается на одно нажатие клавиши
+    private static final int MAX_CITY_SUGGESTIONS = 20;
+
     private final FlightService flightService;
-    private final UserService userService;
     private final BookingService bookingService;
+    private final ConnectionSearchService connectionSearchService;
+    private final CityIndexService cityIndexService;
 
     public PassengerFlightController(FlightService flightService,
-                                     UserService userService,
-                                     BookingService bookingService) {
+                                     BookingService bookingService,
+                                     ConnectionSearchService connectionSearchService,
+                                     CityIndexService cityIndexService) {
         this.flightService = flightService;
-        this.userService = userService;
         this.bookingService = bookingService;
+        this.connectionSearchService = connectionSearchService;
+        this.cityIndexService = cityIndexService;
     }
 
     @GetMapping("/search/flights")
@@ -38,7 +47,9 @@ public class PassengerFlightController {
             @RequestParam(required = false) String departureCity,
             @RequestParam(required = false) String arrivalCity,
             @RequestParam(required = false) LocalDate date,
-            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @CurrentUser User user,
             Model model
     ) {
         model.addAttribute("departureCity", departureCity);
@@ -49,14 +60,18 @@ public class PassengerFlightController {
         model.addAttribute("flights", List.of());
 
         if (date != null) {
-            List<Flight> flights =
-                    flightService.searchFlights(departureCity, arrivalCity, date);
+            // Одна страница результатов; следующая запрашивается по курсору nextCursor
+            FlightSearchPage page =
+                    flightService.searchFlights(departureCity, arrivalCity, date, cursor, size);
 
-            model.addAttribute("flights", flights);
+            model.addAttribute("flights", page.getFlights());
+            model.addAttribute("nextCursor", page.getNextCursor());
+            model.addAttribute("citiesTruncated", page.isCitiesTruncated());
+            model.addAttribute("maxCityMatches", FlightSearchService.MAX_CITY_MATCHES);
+            model.addAttribute("firstPage", cursor == null || cursor.isBlank());
             model.addAttribute("searchPerformed", true);
 
             // защита от повторного бронирования
-            User user = userService.findByUsername(userDetails.getUsername());
             List<Booking> bookings = bookingService.findBookingsByUser(user);
 
             Set<Long> bookedFlightIds = bookings.stream()
@@ -68,4 +83,47 @@ public class PassengerFlightController {
 
         return "search/flights";
     }
+
+    @GetMapping("/search/connections")
+    public String searchConnections(
+            @RequestParam(required = false) String departureCity,
+            @RequestParam(required = false) String arrivalCity,
+            @RequestParam(required = false) LocalDate date,
+            @RequestParam(required = false) Integer minLayover,
+            @RequestParam(required = false) Integer maxLayover,
+            @RequestParam(defaultValue = "2") int maxStops,
+            Model model
+    ) {
+        model.addAttribute("departureCity", departureCity);
+        model.addAttribute("arrivalCity", arrivalCity);
+        model.addAttribute("date", date);
+        model.addAttribute("minLayover",
+                minLayover != null ? minLayover : ConnectionSearchService.DEFAULT_MIN_LAYOVER_MINUTES);
+        model.addAttribute("maxLayover",
+                maxLayover != null ? maxLayover : ConnectionSearchService.DEFAULT_MAX_LAYOVER_MINUTES);
+        model.addAttribute("maxStops", maxStops);
+
+        model.addAttribute("searchPerformed", false);
+        model.addAttribute("itineraries", List.of());
+
+        if (date != null && departureCity != null && arrivalCity != null) {
+            List<Itinerary> itineraries = connectionSearchService.search(
+                    departureCity, arrivalCity, date, minLayover, maxLayover, maxStops);
+            model.addAttribute("itineraries", itineraries);
+            model.addAttribute("searchPerformed", true);
+        }
+
+        return "search/connections";
+    }
+
+    /** Подсказки городов для полей поиска (AJAX) */
+    @GetMapping("/search/cities")
+    @ResponseBody
+    public List<String> suggestCities(@RequestParam(required = false) String prefix,
+                                      @RequestParam(defaultValue = "10") int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        return cityIndexService.suggest(prefix, Math.max(1, Math.min(limit, MAX_CITY_SUGGESTIONS)));
+    }
 }
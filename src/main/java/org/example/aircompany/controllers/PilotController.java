@@ -1,14 +1,12 @@
 package org.example.aircompany.controllers;
 
+import org.example.aircompany.config.CurrentUser;
 import org.example.aircompany.model.Flight;
 import org.example.aircompany.model.FlightLog;
 import org.example.aircompany.model.User;
 import org.example.aircompany.model.UserRole;
 import org.example.aircompany.services.FlightLogService;
 import org.example.aircompany.services.FlightService;
-import org.example.aircompany.services.UserService;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -19,23 +17,18 @@ public class PilotController {
 
     private final FlightService flightService;
     private final FlightLogService flightLogService;
-    private final UserService userService;
 
     public PilotController(FlightService flightService,
-                           FlightLogService flightLogService,
-                           UserService userService) {
+                           FlightLogService flightLogService) {
         this.flightService = flightService;
         this.flightLogService = flightLogService;
-        this.userService = userService;
     }
 
     // Список рейсов пилота
     @GetMapping("/flights")
-    public String pilotFlights(@AuthenticationPrincipal UserDetails pilotDetails,
+    public String pilotFlights(@CurrentUser User pilot,
                                Model model) {
 
-        User pilot = userService.findByUsername(pilotDetails.getUsername());
-
         // Показываем только рейсы, назначенные этому пилоту, для которых еще нет отчетов
         model.addAttribute("flights", flightService.findFlightsByPilotWithoutLogs(pilot));
 
@@ -46,11 +39,9 @@ public class PilotController {
     // Список летных отчетов
 
     @GetMapping("/logs")
-    public String listLogs(@AuthenticationPrincipal UserDetails pilotDetails,
+    public String listLogs(@CurrentUser User currentUser,
                            Model model) {
 
-        User currentUser = userService.findByUsername(pilotDetails.getUsername());
-        
         // Если пользователь админ, то показываем все логи из БД
         // Если пользователь пилот, то показываем только его логи
         if (currentUser.getRole() == UserRole.admin) {
@@ -68,11 +59,10 @@ public class PilotController {
     // Форма нового летного отчета
 
     @GetMapping("/logs/new")
-    public String newLogForm(@AuthenticationPrincipal UserDetails pilotDetails,
+    public String newLogForm(@CurrentUser User pilot,
                              @RequestParam Long flightId,
                              Model model) {
 
-        User pilot = userService.findByUsername(pilotDetails.getUsername());
         Flight flight = flightService.findFlightById(flightId)
                 .orElseThrow(() -> new IllegalArgumentException("Рейс не найден"));
 
@@ -105,13 +95,12 @@ public class PilotController {
     // Сохранение летного отчета
 
     @PostMapping("/logs/save")
-    public String saveLog(@AuthenticationPrincipal UserDetails pilotDetails,
+    public String saveLog(@CurrentUser User pilot,
                           @RequestParam Long flightId,
                           @RequestParam String technicalCheck,
                           @ModelAttribute("log") FlightLog log,
                           Model model) {
 
-        User pilot = userService.findByUsername(pilotDetails.getUsername());
         Flight flight = flightService.findFlightById(flightId)
                 .orElseThrow(() -> new IllegalArgumentException("Рейс не найден"));
 
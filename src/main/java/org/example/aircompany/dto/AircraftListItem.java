@@ -0,0 +1,16 @@
+package org.example.aircompany.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.example.aircompany.model.Aircraft;
+
+// Строка списка самолетов — только отображаемые колонки
+@Data
+@AllArgsConstructor
+public class AircraftListItem {
+
+    private Long aircraftId;
+    private String model;
+    private String registration;
+    private Aircraft.AircraftStatus status;
+}
@@ -0,0 +1,24 @@
+package org.example.aircompany.dto;
+
+import lombok.Data;
+
+// Использование самолета за период — сумма дневных сводок AircraftDayRollup
+@Data
+public class AircraftUtilization {
+
+    private Long aircraftId;
+    private String aircraftModel;
+    private long flights;
+    private long blockMinutes;
+
+    // Доля времени периода, проведенная в полете (заполняет RollupService по длине периода)
+    private double utilization;
+
+    // Вызывается из выражения SELECT new ... в AircraftDayRollupRepository
+    public AircraftUtilization(Long aircraftId, String aircraftModel, Long flights, Long blockMinutes) {
+        this.aircraftId = aircraftId;
+        this.aircraftModel = aircraftModel;
+        this.flights = flights != null ? flights : 0;
+        this.blockMinutes = blockMinutes != null ? blockMinutes : 0;
+    }
+}
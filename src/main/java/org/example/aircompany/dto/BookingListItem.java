@@ -0,0 +1,20 @@
+package org.example.aircompany.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.example.aircompany.model.Booking;
+
+import java.time.LocalDateTime;
+
+// Строка списка бронирований для сотрудников — только отображаемые колонки
+@Data
+@AllArgsConstructor
+public class BookingListItem {
+
+    private Long bookingId;
+    private String username;
+    private String flightNumber;
+    private LocalDateTime bookingDate;
+    private String seatNumber;
+    private Booking.BookingStatus status;
+}
@@ -0,0 +1,14 @@
+package org.example.aircompany.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Превышение лимита налета пилота: в скользящем окне windowHours часов было бы plannedMinutes минут при лимите limitMinutes
+@Data
+@AllArgsConstructor
+public class DutyBreach {
+
+    private int windowHours;
+    private long limitMinutes;
+    private long plannedMinutes;
+}
@@ -0,0 +1,29 @@
+package org.example.aircompany.dto;
+
+import lombok.Data;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.services.SeatMap;
+
+// Рейс в результатах поиска вместе с загрузкой салона
+@Data
+public class FlightAvailability {
+
+    private Flight flight;
+
+    // Занятые места (бронирования с номером места)
+    private long bookedSeats;
+
+    // Всего мест в салоне
+    private int totalSeats;
+
+    // Вызывается из выражения SELECT new ... в FlightRepository
+    public FlightAvailability(Flight flight, Long bookedSeats, Integer rows) {
+        this.flight = flight;
+        this.bookedSeats = bookedSeats != null ? bookedSeats : 0;
+        this.totalSeats = (rows != null ? rows : SeatMap.DEFAULT_ROWS) * SeatMap.SEAT_LETTERS.length();
+    }
+
+    public long getSeatsLeft() {
+        return Math.max(0, totalSeats - bookedSeats);
+    }
+}
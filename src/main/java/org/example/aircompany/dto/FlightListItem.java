@@ -0,0 +1,26 @@
+package org.example.aircompany.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.example.aircompany.model.Flight;
+
+import java.time.LocalDateTime;
+
+// Строка списка рейсов для сотрудников — только отображаемые колонки
+@Data
+@AllArgsConstructor
+public class FlightListItem {
+
+    private Long flightId;
+    private String flightNumber;
+    private String departureCity;
+    private String arrivalCity;
+    private LocalDateTime departureTime;
+    private LocalDateTime arrivalTime;
+
+    // null — не назначен
+    private String aircraftModel;
+    private String pilotUsername;
+
+    private Flight.FlightStatus status;
+}
@@ -0,0 +1,54 @@
+package org.example.aircompany.dto;
+
+import lombok.Data;
+import org.example.aircompany.services.SeatMap;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Рейс с загрузкой салона — исходная строка для пересчета сводок (RollupService)
+@Data
+public class FlightLoad {
+
+    private Long flightId;
+    private String departureCityKey;
+    private String arrivalCityKey;
+    private String departureCity;
+    private String arrivalCity;
+    private LocalDateTime departureTime;
+    private LocalDateTime arrivalTime;
+
+    // null — самолет не найден
+    private Long aircraftId;
+    private String aircraftModel;
+
+    private int totalSeats;
+    private long bookedSeats;
+
+    // Вызывается из выражения SELECT new ... в FlightRepository
+    public FlightLoad(Long flightId, String departureCityKey, String arrivalCityKey,
+                      String departureCity, String arrivalCity,
+                      LocalDateTime departureTime, LocalDateTime arrivalTime,
+                      Long aircraftId, String aircraftModel, Integer rows, Long bookedSeats) {
+        this.flightId = flightId;
+        this.departureCityKey = departureCityKey;
+        this.arrivalCityKey = arrivalCityKey;
+        this.departureCity = departureCity;
+        this.arrivalCity = arrivalCity;
+        this.departureTime = departureTime;
+        this.arrivalTime = arrivalTime;
+        this.aircraftId = aircraftId;
+        this.aircraftModel = aircraftModel;
+        this.totalSeats = (rows != null ? rows : SeatMap.DEFAULT_ROWS) * SeatMap.SEAT_LETTERS.length();
+        this.bookedSeats = bookedSeats != null ? bookedSeats : 0;
+    }
+
+    public LocalDate getFlightDate() {
+        return departureTime.toLocalDate();
+    }
+
+    public long getBlockMinutes() {
+        return Math.max(0, Duration.between(departureTime, arrivalTime).toMinutes());
+    }
+}
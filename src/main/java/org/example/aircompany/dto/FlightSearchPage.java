@@ -0,0 +1,30 @@
+package org.example.aircompany.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// Одна страница результатов поиска рейсов
+@Data
+@AllArgsConstructor
+public class FlightSearchPage {
+
+    // Рейсы страницы вместе со свободными местами
+    private List<FlightAvailability> flights;
+
+    // Курсор следующей страницы (null — это последняя страница)
+    private String nextCursor;
+
+    // Введенному тексту соответствует больше городов, чем подставляется в запрос:
+    // рейсы остальных городов в выдачу не попали, пользователю нужно уточнить название
+    private boolean citiesTruncated;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public static FlightSearchPage empty() {
+        return new FlightSearchPage(List.of(), null, false);
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.aircompany.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.example.aircompany.events.FlightSnapshot;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Маршрут с пересадками: рейсы по порядку
+@Data
+@AllArgsConstructor
+public class Itinerary {
+
+    private List<FlightSnapshot> legs;
+
+    public int getStops() {
+        return legs.size() - 1;
+    }
+
+    public LocalDateTime getDepartureTime() {
+        return legs.get(0).departureTime();
+    }
+
+    public LocalDateTime getArrivalTime() {
+        return legs.get(legs.size() - 1).arrivalTime();
+    }
+
+    // Общее время в пути, включая пересадки
+    public String getTotalDuration() {
+        Duration duration = Duration.between(getDepartureTime(), getArrivalTime());
+        return duration.toHours() + " ч " + duration.toMinutesPart() + " мин";
+    }
+}
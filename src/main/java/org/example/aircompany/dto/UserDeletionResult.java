@@ -0,0 +1,16 @@
+package org.example.aircompany.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Итог удаления группы пользователей: сколько удалено записей каждого вида
+@Data
+@AllArgsConstructor
+public class UserDeletionResult {
+
+    private int users;
+    private int bookings;
+    private int flightLogs;
+    // Рейсы удаленных пилотов, оставшиеся без пилота
+    private int unassignedFlights;
+}
@@ -0,0 +1,15 @@
+package org.example.aircompany.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.example.aircompany.model.UserRole;
+
+// Строка списка пользователей для администратора — без хэша пароля и связанных сущностей
+@Data
+@AllArgsConstructor
+public class UserListItem {
+
+    private Long userId;
+    private String username;
+    private UserRole role;
+}
@@ -0,0 +1,42 @@
+package org.example.aircompany.events;
+
+import org.example.aircompany.model.Aircraft;
+import org.example.aircompany.model.UserRole;
+
+/**
+ * Изменилось количество записей в одной из групп статистики.
+ * Публикуется сервисами при записи; StatsService применяет изменение к своим счетчикам после коммита.
+ * Количество рейсов считается по FlightChangedEvent.
+ *
+ * @param counter имя счетчика (см. фабричные методы)
+ * @param delta   на сколько изменилось количество
+ */
+public record CounterChangedEvent(String counter, long delta) {
+
+    public static final String BOOKINGS = "bookings";
+    public static final String FLIGHT_LOGS = "flightLogs";
+
+    public static String usersWithRole(UserRole role) {
+        return "users." + role.name();
+    }
+
+    public static String aircraftWithStatus(Aircraft.AircraftStatus status) {
+        return "aircraft." + status.name();
+    }
+
+    public static CounterChangedEvent users(UserRole role, long delta) {
+        return new CounterChangedEvent(usersWithRole(role), delta);
+    }
+
+    public static CounterChangedEvent aircraft(Aircraft.AircraftStatus status, long delta) {
+        return new CounterChangedEvent(aircraftWithStatus(status), delta);
+    }
+
+    public static CounterChangedEvent bookings(long delta) {
+        return new CounterChangedEvent(BOOKINGS, delta);
+    }
+
+    public static CounterChangedEvent flightLogs(long delta) {
+        return new CounterChangedEvent(FLIGHT_LOGS, delta);
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.aircompany.events;
+
+/**
+ * Рейс создан, изменен или удален.
+ * Публикуется FlightService; слушатели обновляют свои структуры в памяти после коммита транзакции.
+ *
+ * @param before состояние до изменения (null — рейс создан)
+ * @param after  состояние после изменения (null — рейс удален)
+ */
+public record FlightChangedEvent(FlightSnapshot before, FlightSnapshot after) {
+
+    public boolean isCreated() {
+        return before == null;
+    }
+
+    public boolean isDeleted() {
+        return after == null;
+    }
+}
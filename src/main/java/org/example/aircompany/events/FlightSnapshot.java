@@ -0,0 +1,47 @@
+package org.example.aircompany.events;
+
+import org.example.aircompany.model.Flight;
+
+import java.time.LocalDateTime;
+
+/**
+ * Неизменяемый снимок рейса для событий: только значения и идентификаторы,
+ * без ссылок на управляемые сущности.
+ */
+public record FlightSnapshot(Long flightId,
+                             String flightNumber,
+                             String departureCity,
+                             String arrivalCity,
+                             LocalDateTime departureTime,
+                             LocalDateTime arrivalTime,
+                             Flight.FlightStatus status,
+                             Long aircraftId,
+                             Long pilotId) {
+
+    public static FlightSnapshot of(Flight flight) {
+        return new FlightSnapshot(
+                flight.getFlightId(),
+                flight.getFlightNumber(),
+                flight.getDepartureCity(),
+                flight.getArrivalCity(),
+                flight.getDepartureTime(),
+                flight.getArrivalTime(),
+                flight.getStatus(),
+                flight.getAircraft() != null ? flight.getAircraft().getAircraftId() : null,
+                flight.getPilot() != null ? flight.getPilot().getUserId() : null);
+    }
+
+    // Тот же рейс после снятия пилота
+    public FlightSnapshot withoutPilot() {
+        return new FlightSnapshot(flightId, flightNumber, departureCity, arrivalCity,
+                departureTime, arrivalTime, status, aircraftId, null);
+    }
+
+    public String departureCityKey() {
+        return Flight.cityKey(departureCity);
+    }
+
+    public String arrivalCityKey() {
+        return Flight.cityKey(arrivalCity);
+    }
+}
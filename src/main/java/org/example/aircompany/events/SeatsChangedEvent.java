@@ -0,0 +1,10 @@
+package org.example.aircompany.events;
+
+/**
+ * На рейсе заняли или освободили место.
+ * Публикуется BookingService; по нему сбрасываются закэшированные результаты поиска с этим рейсом.
+ *
+ * @param flight рейс, на котором изменилась занятость мест
+ */
+public record SeatsChangedEvent(FlightSnapshot flight) {
+}
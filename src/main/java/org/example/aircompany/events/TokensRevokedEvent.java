@@ -0,0 +1,13 @@
+package org.example.aircompany.events;
+
+import java.util.Set;
+
+/**
+ * Токены входа пользователей отозваны на другом узле (смена роли, удаление, выход).
+ * Публикуется AuthTokenService при опросе таблицы отзывов; по нему сбрасываются
+ * закэшированные UserDetails этих пользователей — на своем узле их сбрасывает UserChangedEvent.
+ *
+ * @param userIds id пользователей с новыми отзывами
+ */
+public record TokensRevokedEvent(Set<Long> userIds) {
+}
@@ -0,0 +1,10 @@
+package org.example.aircompany.events;
+
+/**
+ * Учетная запись создана, удалена или изменена (роль, пароль).
+ * Публикуется UserService; по нему сбрасывается закэшированный UserDetails этого пользователя.
+ *
+ * @param username имя пользователя
+ */
+public record UserChangedEvent(String username) {
+}
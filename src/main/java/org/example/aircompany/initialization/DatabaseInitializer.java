@@ -1,5 +1,6 @@
 package org.example.aircompany.initialization;
 
+import org.example.aircompany.model.Flight;
 import org.example.aircompany.model.User;
 import org.example.aircompany.model.UserRole;
 import org.example.aircompany.repositories.UserRepository;
@@ -10,6 +11,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 @Component
 public class DatabaseInitializer implements CommandLineRunner {
 
@@ -48,8 +51,14 @@ public class DatabaseInitializer implements CommandLineRunner {
         // Финально обновляем структуру таблиц (убираем старые значения из ENUM)
         finalizeTableStructures();
         
-        // Исправляем статусы самолетов для завершенных рейсов
-        fixAircraftStatusesForCompletedFlights();
+        // Освобождаем самолеты, занятые статусом in_flight по прежнему правилу назначения
+        releaseAircraftHeldByAssignment();
+
+        // Заполняем нормализованные ключи городов для рейсов, созданных до их появления
+        fillCityKeys();
+
+        // Повторные бронирования одного рейса одним пассажиром не дают создать uk_bookings_user_flight
+        reportDuplicateBookings();
 
         // Проверяем, существует ли уже пользователь 'admin'
         if (userRepository.findByUsername("admin").isEmpty()) {
@@ -185,12 +194,55 @@ public class DatabaseInitializer implements CommandLineRunner {
     }
     
     @Transactional
-    private void fixAircraftStatusesForCompletedFlights() {
+    private void fillCityKeys() {
+        try {
+            List<Object[]> rows = jdbcTemplate.query(
+                "SELECT flight_id, departure_city, arrival_city FROM flights " +
+                "WHERE departure_city_key IS NULL OR arrival_city_key IS NULL",
+                (rs, rowNum) -> new Object[] {
+                    Flight.cityKey(rs.getString("departure_city")),
+                    Flight.cityKey(rs.getString("arrival_city")),
+                    rs.getLong("flight_id")
+                }
+            );
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(
+                    "UPDATE flights SET departure_city_key = ?, arrival_city_key = ? WHERE flight_id = ?",
+                    rows
+                );
+                System.out.println("Заполнены ключи городов для " + rows.size() + " рейсов");
+            }
+        } catch (Exception e) {
+            System.err.println("Ошибка при заполнении ключей городов: " + e.getMessage());
+        }
+    }
+    
+    @Transactional
+    private void releaseAircraftHeldByAssignment() {
         try {
-            flightService.fixAircraftStatusesForCompletedFlights();
-            System.out.println("Статусы самолетов для завершенных рейсов исправлены");
+            int released = flightService.releaseAircraftHeldByAssignment();
+            if (released > 0) {
+                System.out.println("Освобождено " + released + " самолетов: статус 'in_flight' заменен на 'active'");
+            }
         } catch (Exception e) {
             System.err.println("Ошибка при исправлении статусов самолетов: " + e.getMessage());
         }
     }
+
+    @Transactional
+    private void reportDuplicateBookings() {
+        try {
+            Integer duplicates = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM (SELECT user_id, flight_id FROM bookings " +
+                "GROUP BY user_id, flight_id HAVING COUNT(*) > 1) d",
+                Integer.class
+            );
+            if (duplicates != null && duplicates > 0) {
+                System.err.println("Найдено " + duplicates + " пар пассажир/рейс с несколькими бронированиями: " +
+                        "уникальный индекс uk_bookings_user_flight не будет создан, пока лишние бронирования не удалены");
+            }
+        } catch (Exception e) {
+            System.err.println("Ошибка при проверке повторных бронирований: " + e.getMessage());
+        }
+    }
 }
\ No newline at end of file
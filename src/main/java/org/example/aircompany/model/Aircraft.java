@@ -3,10 +3,16 @@ package org.example.aircompany.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import java.util.List;
 
 @Entity
-@Table(name = "aircrafts")
+@Table(name = "aircrafts", indexes = @Index(name = "idx_aircrafts_status", columnList = "status"))
+// Справочная сущность: читается почти в каждом запросе (формы, вместимость салона), меняется редко
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "aircraft")
 @Data
 public class Aircraft {
 
@@ -0,0 +1,41 @@
+package org.example.aircompany.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Использование самолета за день: число рейсов и время в полете (рейс относится ко дню вылета).
+// Ведется RollupService
+@Entity
+@Table(name = "aircraft_day_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_aircraft_day_rollups_aircraft_date",
+                columnNames = {"aircraft_id", "flight_date"}),
+        indexes = @Index(name = "idx_aircraft_day_rollups_date", columnList = "flight_date"))
+@Data
+public class AircraftDayRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long rollupId;
+
+    // Без внешнего ключа: сводка не мешает удалению самолета и пересчитывается компактизацией
+    @Column(name = "aircraft_id", nullable = false)
+    private Long aircraftId;
+
+    @Column(name = "aircraft_model", length = 50)
+    private String aircraftModel;
+
+    @Column(name = "flight_date", nullable = false)
+    private LocalDate flightDate;
+
+    @Column(name = "flights", nullable = false)
+    private int flights;
+
+    @Column(name = "block_minutes", nullable = false)
+    private long blockMinutes;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -5,7 +5,33 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "bookings")
+@Table(name = "bookings",
+        uniqueConstraints = {
+                // Одно место на рейсе может занимать только одно бронирование — гарантия на уровне БД
+                @UniqueConstraint(name = "uk_bookings_flight_seat", columnNames = {"flight_id", "seat_number"}),
+                // Пассажир бронирует рейс один раз (проверка existsByUserAndFlight не защищает от параллельных запросов)
+                @UniqueConstraint(name = "uk_bookings_user_flight", columnNames = {"user_id", "flight_id"})
+        })
+// Список бронирований: пассажир и рейс
+@NamedEntityGraph(name = "Booking.list",
+        attributeNodes = {
+                @NamedAttributeNode(value = "user", subgraph = "user"),
+                @NamedAttributeNode("flight")
+        },
+        subgraphs = @NamedSubgraph(name = "user", attributeNodes = @NamedAttributeNode("passengerDetails")))
+// Форма бронирования и проверка мест: рейс вместе с самолетом (вместимость) и пилотом
+@NamedEntityGraph(name = "Booking.details",
+        attributeNodes = {
+                @NamedAttributeNode(value = "user", subgraph = "user"),
+                @NamedAttributeNode(value = "flight", subgraph = "flight")
+        },
+        subgraphs = {
+                @NamedSubgraph(name = "user", attributeNodes = @NamedAttributeNode("passengerDetails")),
+                @NamedSubgraph(name = "flight", attributeNodes = {
+                        @NamedAttributeNode("aircraft"),
+                        @NamedAttributeNode("pilot")
+                })
+        })
 @Data
 public class Booking {
 
@@ -13,13 +39,18 @@ public class Booking {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long bookingId;
 
+    // Оптимистическая блокировка: защищает от потерянных обновлений при параллельном редактировании
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+
     // Связь Many-to-One: много бронирований на одного пользователя (Пассажира)
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
     // Связь Many-to-One: много бронирований на один рейс
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "flight_id", nullable = false)
     private Flight flight;
 
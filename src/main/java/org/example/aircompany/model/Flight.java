@@ -6,9 +6,28 @@ import lombok.ToString;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
 
 @Entity
-@Table(name = "flights")
+@Table(name = "flights", indexes = {
+        // Поиск рейсов по маршруту (и только по городу отправления — левый префикс индекса)
+        @Index(name = "idx_flights_route", columnList = "departure_city_key, arrival_city_key, status, departure_time"),
+        // Поиск только по городу прибытия
+        @Index(name = "idx_flights_arrival", columnList = "arrival_city_key, status, departure_time"),
+        // Поиск без указания городов
+        @Index(name = "idx_flights_status_departure", columnList = "status, departure_time"),
+        // Рейсы в воздухе по времени прилета — очередь FlightStatusScheduler
+        @Index(name = "idx_flights_status_arrival", columnList = "status, arrival_time"),
+        // Рейсы пилота по статусу — рейсы, ожидающие журнала (анти-соединение в FlightRepository)
+        @Index(name = "idx_flights_pilot_status", columnList = "pilot_id, status")
+})
+// Рейс вместе с самолетом и пилотом — для списка рейсов, формы рейса и проверки мест (вместимость самолета)
+@NamedEntityGraph(name = "Flight.details",
+        attributeNodes = {
+                @NamedAttributeNode("aircraft"),
+                @NamedAttributeNode(value = "pilot", subgraph = "pilot")
+        },
+        subgraphs = @NamedSubgraph(name = "pilot", attributeNodes = @NamedAttributeNode("passengerDetails")))
 @Data
 public class Flight {
 
@@ -16,10 +35,15 @@ public class Flight {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long flightId;
 
+    // Оптимистическая блокировка: защищает от потерянных обновлений при параллельном редактировании
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+
     @Column(name = "flight_number", nullable = false, length = 10, unique = true)
     private String flightNumber;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "pilot_id")
     private User pilot;
 
@@ -30,6 +54,13 @@ public class Flight {
     @Column(name = "arrival_city", nullable = false, length = 50)
     private String arrivalCity;
 
+    // Нормализованные названия городов (см. cityKey) — по ним идет индексированный поиск
+    @Column(name = "departure_city_key", length = 50)
+    private String departureCityKey;
+
+    @Column(name = "arrival_city_key", length = 50)
+    private String arrivalCityKey;
+
     @Column(name = "departure_time", nullable = false)
     private LocalDateTime departureTime;
 
@@ -41,7 +72,7 @@ public class Flight {
     private FlightStatus status;
 
     // Связь Many-to-One: много рейсов (Flight) на один самолет (Aircraft)
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "aircraft_id", nullable = false)
     private Aircraft aircraft;
 
@@ -50,6 +81,27 @@ public class Flight {
     @ToString.Exclude
     private List<Booking> bookings;
 
+    @PrePersist
+    @PreUpdate
+    private void updateCityKeys() {
+        departureCityKey = cityKey(departureCity);
+        arrivalCityKey = cityKey(arrivalCity);
+    }
+
+    /**
+     * Нормализованный ключ города: без лишних пробелов, в нижнем регистре, "ё" заменена на "е".
+     * "  Санкт-Петербург " и "санкт-петербург" дают один и тот же ключ.
+     */
+    public static String cityKey(String city) {
+        if (city == null) {
+            return null;
+        }
+        return city.trim()
+                .replaceAll("\\s+", " ")
+                .toLowerCase(Locale.ROOT)
+                .replace('ё', 'е');
+    }
+
     // Enum для статусов рейса
     public enum FlightStatus {
         scheduled, delayed, in_flight, completed, cancelled
@@ -0,0 +1,38 @@
+package org.example.aircompany.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Сколько бронирований на рейс сделано в каждый день (динамика продаж рейса).
+// Ведется RollupService
+@Entity
+@Table(name = "flight_booking_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_flight_booking_rollups_flight_date",
+                columnNames = {"flight_id", "booking_day"}),
+        indexes = @Index(name = "idx_flight_booking_rollups_day", columnList = "booking_day"))
+@Data
+public class FlightBookingRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long rollupId;
+
+    // Без внешнего ключа, как и в остальных сводках
+    @Column(name = "flight_id", nullable = false)
+    private Long flightId;
+
+    @Column(name = "flight_number", nullable = false, length = 10)
+    private String flightNumber;
+
+    @Column(name = "booking_day", nullable = false)
+    private LocalDate bookingDay;
+
+    @Column(name = "bookings", nullable = false)
+    private long bookings;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
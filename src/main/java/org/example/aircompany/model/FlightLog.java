@@ -5,7 +5,15 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "flight_logs")
+// Журнал рейса ищется по рейсу (проверка "рейс без журнала" — анти-соединение в FlightRepository)
+@Table(name = "flight_logs", indexes = @Index(name = "idx_flight_logs_flight", columnList = "flight_id"))
+// Список журналов: рейс и пилот
+@NamedEntityGraph(name = "FlightLog.list",
+        attributeNodes = {
+                @NamedAttributeNode("flight"),
+                @NamedAttributeNode(value = "pilot", subgraph = "pilot")
+        },
+        subgraphs = @NamedSubgraph(name = "pilot", attributeNodes = @NamedAttributeNode("passengerDetails")))
 @Data
 public class FlightLog {
 
@@ -13,11 +21,11 @@ public class FlightLog {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long logId;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "flight_id", nullable = false)
     private Flight flight;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User pilot;
 
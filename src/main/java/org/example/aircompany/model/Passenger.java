@@ -4,9 +4,14 @@ import jakarta.persistence.*;
 import lombok.Data;
 import java.time.LocalDate;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @Table(name = "passengers")
+// Загружается вместе с каждым User (обратная связь OneToOne не бывает ленивой) — кэшируется вместе с ним
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "passengers")
 @Data
 @NoArgsConstructor
 public class Passenger {
@@ -14,12 +14,12 @@ public class RolesHistory {
     private Long historyId;
 
     // Связь Many-to-One: пользователь, чья роль была изменена
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "target_user_id", nullable = false)
     private User targetUser;
 
     // Связь Many-to-One: администратор, который внес изменения
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "admin_user_id", nullable = false)
     private User adminUser;
 
@@ -0,0 +1,55 @@
+package org.example.aircompany.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Загрузка направления за день: рейсы, места и занятые места (кроме отмененных рейсов).
+// Ведется RollupService; в запросах аналитики читается вместо flights и bookings
+@Entity
+@Table(name = "route_day_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_route_day_rollups_route_date",
+                columnNames = {"departure_city_key", "arrival_city_key", "flight_date"}),
+        indexes = @Index(name = "idx_route_day_rollups_date", columnList = "flight_date"))
+@Data
+public class RouteDayRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long rollupId;
+
+    @Column(name = "departure_city_key", nullable = false, length = 50)
+    private String departureCityKey;
+
+    @Column(name = "arrival_city_key", nullable = false, length = 50)
+    private String arrivalCityKey;
+
+    @Column(name = "departure_city", nullable = false, length = 50)
+    private String departureCity;
+
+    @Column(name = "arrival_city", nullable = false, length = 50)
+    private String arrivalCity;
+
+    // День вылета
+    @Column(name = "flight_date", nullable = false)
+    private LocalDate flightDate;
+
+    @Column(name = "flights", nullable = false)
+    private int flights;
+
+    @Column(name = "seats", nullable = false)
+    private long seats;
+
+    @Column(name = "booked_seats", nullable = false)
+    private long bookedSeats;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Коэффициент загрузки: занятые места / все места
+    public double getLoadFactor() {
+        return seats == 0 ? 0.0 : (double) bookedSeats / seats;
+    }
+}
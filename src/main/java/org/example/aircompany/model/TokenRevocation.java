@@ -0,0 +1,22 @@
+package org.example.aircompany.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// Отзыв токенов входа пользователя: токены, выданные не позже revokedAt, недействительны.
+// Ведется AuthTokenService; каждый узел периодически перечитывает новые записи
+@Entity
+@Table(name = "token_revocations",
+        indexes = @Index(name = "idx_token_revocations_revoked_at", columnList = "revoked_at"))
+@Data
+public class TokenRevocation {
+
+    // Без внешнего ключа: запись должна пережить удаление пользователя
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    // Момент отзыва, мс от эпохи
+    @Column(name = "revoked_at", nullable = false)
+    private long revokedAt;
+}
@@ -0,0 +1,34 @@
+package org.example.aircompany.repositories;
+
+import org.example.aircompany.dto.AircraftUtilization;
+import org.example.aircompany.model.AircraftDayRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface AircraftDayRollupRepository extends JpaRepository<AircraftDayRollup, Long> {
+
+    Optional<AircraftDayRollup> findByAircraftIdAndFlightDate(Long aircraftId, LocalDate flightDate);
+
+    // Сумма дневных сводок по каждому самолету за период (индекс idx_aircraft_day_rollups_date)
+    @Query("SELECT new org.example.aircompany.dto.AircraftUtilization(" +
+            "r.aircraftId, MAX(r.aircraftModel), SUM(r.flights), SUM(r.blockMinutes)) " +
+            "FROM AircraftDayRollup r WHERE r.flightDate BETWEEN :from AND :to " +
+            "GROUP BY r.aircraftId ORDER BY r.aircraftId")
+    List<AircraftUtilization> sumByAircraft(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Строки за дни [from, to) — компактизация пересчитывает сводки по частям
+    @Modifying
+    @Query("DELETE FROM AircraftDayRollup r WHERE r.flightDate >= :from AND r.flightDate < :to")
+    int deleteByFlightDateRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Строки вне дней [from, to), в которые есть рейсы
+    @Modifying
+    @Query("DELETE FROM AircraftDayRollup r WHERE r.flightDate < :from OR r.flightDate >= :to")
+    int deleteOutsideFlightDateRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
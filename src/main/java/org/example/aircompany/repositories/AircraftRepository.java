@@ -1,6 +1,53 @@
 package org.example.aircompany.repositories;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.example.aircompany.dto.AircraftListItem;
 import org.example.aircompany.model.Aircraft;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface AircraftRepository extends JpaRepository<Aircraft, Long> {}
\ No newline at end of file
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface AircraftRepository extends JpaRepository<Aircraft, Long> {
+
+    // Весь парк — для выпадающего списка формы рейса. Результат кэшируется (кэш запросов Hibernate,
+    // сами самолеты — в регионе aircraft): сбрасывается при любой записи в таблицу aircrafts
+    @Override
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "aircraft-list")
+    })
+    List<Aircraft> findAll();
+
+    // Самолеты в статусе in_flight, у которых нет рейса в воздухе и завершенного рейса без лётного журнала
+    @Query("SELECT a FROM Aircraft a WHERE a.status = 'in_flight' AND NOT EXISTS (" +
+            "SELECT f FROM Flight f WHERE f.aircraft = a AND (f.status = 'in_flight' OR " +
+            "(f.status = 'completed' AND NOT EXISTS (SELECT l FROM FlightLog l WHERE l.flight = f))))")
+    List<Aircraft> findHeldWithoutFlight();
+
+    // Количество самолетов в каждом статусе — для счетчиков статистики (индекс idx_aircrafts_status)
+    @Query("SELECT a.status, COUNT(a) FROM Aircraft a GROUP BY a.status")
+    List<Object[]> countAircraftByStatus();
+
+    // Список самолетов: только отображаемые колонки, без управляемых сущностей
+    @Query("SELECT new org.example.aircompany.dto.AircraftListItem(a.aircraftId, a.model, a.registration, a.status) " +
+            "FROM Aircraft a ORDER BY a.aircraftId")
+    List<AircraftListItem> findListItems();
+
+    // Самолеты вылетевших рейсов: active -> in_flight одним UPDATE (на обслуживании и уже в полете не меняются)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Aircraft a SET a.status = 'in_flight' WHERE a.aircraftId IN :ids AND a.status = 'active'")
+    int markInFlight(@Param("ids") Collection<Long> ids);
+
+    // Самолет с блокировкой строки до конца транзакции — сохранения рейсов одного самолета выполняются по очереди
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Aircraft a WHERE a.aircraftId = :aircraftId")
+    Optional<Aircraft> findByIdForUpdate(@Param("aircraftId") Long aircraftId);
+}
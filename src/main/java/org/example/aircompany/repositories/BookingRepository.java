@@ -1,20 +1,70 @@
 package org.example.aircompany.repositories;
 
+import org.example.aircompany.dto.BookingListItem;
 import org.example.aircompany.model.Booking;
 import org.example.aircompany.model.Flight;
 import org.example.aircompany.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface BookingRepository extends JpaRepository<Booking, Long> {
 
+    // Связи Booking загружаются лениво; каждому сценарию — свой план выборки одним запросом
+
+    // Все бронирования вместе с пассажиром и рейсом
+    @Override
+    @EntityGraph("Booking.list")
+    List<Booking> findAll();
+
+    // Список бронирований для сотрудников: только отображаемые колонки, без управляемых сущностей
+    @Query("SELECT new org.example.aircompany.dto.BookingListItem(" +
+            "b.bookingId, u.username, f.flightNumber, b.bookingDate, b.seatNumber, b.status) " +
+            "FROM Booking b JOIN b.user u JOIN b.flight f ORDER BY b.bookingId")
+    List<BookingListItem> findListItems();
+
+    // Форма бронирования, сохранение и удаление (нужна вместимость самолета рейса)
+    @Override
+    @EntityGraph("Booking.details")
+    Optional<Booking> findById(Long id);
+
+    // Бронирования пассажира — показываются вместе с рейсами
+    @EntityGraph(attributePaths = "flight")
     List<Booking> findByUser(User user);
 
     boolean existsByUserAndFlight(User user, Flight flight);
 
+    // Бронирования удаляемых пользователей — одним DELETE
+    @Modifying
+    @Query("DELETE FROM Booking b WHERE b.user.userId IN :userIds")
+    int deleteByUserIds(@Param("userIds") Collection<Long> userIds);
+
     List<Booking> findByFlight(Flight flight);
 
     boolean existsByFlightAndSeatNumber(Flight flight, String seatNumber);
+
+    // Бронирования рейса по дням оформления: номер рейса, день, количество — для сводки FlightBookingRollup
+    @Query("SELECT f.flightNumber, CAST(b.bookingDate AS LocalDate), COUNT(b) " +
+            "FROM Booking b JOIN b.flight f WHERE f.flightId = :flightId " +
+            "GROUP BY f.flightNumber, CAST(b.bookingDate AS LocalDate)")
+    List<Object[]> countByDayForFlight(@Param("flightId") Long flightId);
+
+    // То же по рейсам с вылетом в [from, to) — для полного пересчета сводок: id рейса, номер, день, количество
+    @Query("SELECT f.flightId, f.flightNumber, CAST(b.bookingDate AS LocalDate), COUNT(b) " +
+            "FROM Booking b JOIN b.flight f WHERE f.departureTime >= :from AND f.departureTime < :to " +
+            "GROUP BY f.flightId, f.flightNumber, CAST(b.bookingDate AS LocalDate)")
+    List<Object[]> countByFlightAndDayDeparting(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Только номера мест рейса — для построения битовой карты мест
+    @Query("SELECT b.seatNumber FROM Booking b " +
+            "WHERE b.flight.flightId = :flightId AND b.seatNumber IS NOT NULL")
+    List<String> findSeatNumbersByFlightId(@Param("flightId") Long flightId);
 }
 
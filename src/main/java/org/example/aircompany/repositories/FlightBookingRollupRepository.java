@@ -0,0 +1,36 @@
+package org.example.aircompany.repositories;
+
+import org.example.aircompany.model.FlightBookingRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface FlightBookingRollupRepository extends JpaRepository<FlightBookingRollup, Long> {
+
+    List<FlightBookingRollup> findByFlightIdOrderByBookingDay(Long flightId);
+
+    @Modifying
+    @Query("DELETE FROM FlightBookingRollup r WHERE r.flightId = :flightId")
+    void deleteByFlightId(@Param("flightId") Long flightId);
+
+    // Бронирования по дням за период по всем рейсам (индекс idx_flight_booking_rollups_day)
+    @Query("SELECT r.bookingDay, SUM(r.bookings) FROM FlightBookingRollup r " +
+            "WHERE r.bookingDay BETWEEN :from AND :to GROUP BY r.bookingDay ORDER BY r.bookingDay")
+    List<Object[]> sumByDay(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Строки рейсов с вылетом в [from, to) — компактизация пересчитывает сводки по частям
+    @Modifying
+    @Query("DELETE FROM FlightBookingRollup r WHERE r.flightId IN " +
+            "(SELECT f.flightId FROM Flight f WHERE f.departureTime >= :from AND f.departureTime < :to)")
+    int deleteByFlightDepartureRange(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Строки удаленных рейсов
+    @Modifying
+    @Query("DELETE FROM FlightBookingRollup r WHERE r.flightId NOT IN (SELECT f.flightId FROM Flight f)")
+    int deleteOrphans();
+}
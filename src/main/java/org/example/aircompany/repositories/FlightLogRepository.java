@@ -3,17 +3,30 @@ package org.example.aircompany.repositories;
 import org.example.aircompany.model.Flight;
 import org.example.aircompany.model.FlightLog;
 import org.example.aircompany.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface FlightLogRepository extends JpaRepository<FlightLog, Long> {
+    // Списки журналов показывают рейс и пилота — загружаем их тем же запросом
+    @EntityGraph("FlightLog.list")
     List<FlightLog> findByPilotOrderByLogTimeDesc(User pilot);
     
+    @EntityGraph("FlightLog.list")
     List<FlightLog> findAllByOrderByLogTimeDesc();
     
     Optional<FlightLog> findByFlight(Flight flight);
     
     boolean existsByFlight(Flight flight);
+
+    // Журналы удаляемых пилотов — одним DELETE
+    @Modifying
+    @Query("DELETE FROM FlightLog l WHERE l.pilot.userId IN :pilotIds")
+    int deleteByPilotIds(@Param("pilotIds") Collection<Long> pilotIds);
 }
@@ -1,42 +1,267 @@
 package org.example.aircompany.repositories;
 
-import org.example.aircompany.model.Aircraft;
+import org.example.aircompany.dto.FlightAvailability;
+import org.example.aircompany.dto.FlightListItem;
+import org.example.aircompany.dto.FlightLoad;
+import org.example.aircompany.events.FlightSnapshot;
 import org.example.aircompany.model.Flight;
 import org.example.aircompany.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface FlightRepository extends JpaRepository<Flight, Long> {
 
+    // Все рейсы (выпадающие списки в формах): самолет и пилот тем же запросом
+    @Override
+    @EntityGraph("Flight.details")
+    List<Flight> findAll();
+
+    // Список рейсов для сотрудников: только отображаемые колонки, без управляемых сущностей
+    @Query("SELECT new org.example.aircompany.dto.FlightListItem(" +
+            "f.flightId, f.flightNumber, f.departureCity, f.arrivalCity, f.departureTime, f.arrivalTime, " +
+            "a.model, p.username, f.status) " +
+            "FROM Flight f LEFT JOIN f.aircraft a LEFT JOIN f.pilot p ORDER BY f.flightId")
+    List<FlightListItem> findListItems();
+
+    // Форма рейса, бронирование, журнал пилота — везде нужны самолет (вместимость, статус) и пилот
+    @Override
+    @EntityGraph("Flight.details")
+    Optional<Flight> findById(Long id);
+
     Optional<Flight> findByFlightNumber(String flightNumber);
 
-    // Поиск рейсов для пассажиров
-    @Query("SELECT f FROM Flight f " +
-            "WHERE (:departureCity IS NULL OR f.departureCity LIKE %:departureCity%) " +
-            "AND (:arrivalCity IS NULL OR f.arrivalCity LIKE %:arrivalCity%) " +
-            "AND (f.departureTime >= :dateStart) " +
+    // Поиск рейсов для пассажиров по нормализованным ключам городов (индекс idx_flights_route).
+    // Постраничный вывод по ключу (departureTime, flightId): следующая страница начинается
+    // сразу после последнего показанного рейса, без OFFSET. Размер страницы задает Pageable.
+    // Вместе с рейсом в том же запросе считаются занятые места (GROUP BY по рейсу),
+    // распроданные рейсы отбрасываются в HAVING: вместимость = ряды * мест в ряду.
+    @Query("SELECT new org.example.aircompany.dto.FlightAvailability(f, COUNT(b.seatNumber), a.seatCapacity) " +
+            "FROM Flight f LEFT JOIN f.aircraft a LEFT JOIN Booking b ON b.flight = f " +
+            "WHERE f.departureCityKey IN :departureKeys " +
+            "AND f.arrivalCityKey IN :arrivalKeys " +
+            "AND f.status = 'scheduled' " +
+            "AND f.departureTime >= :afterTime " +
+            "AND (f.departureTime > :afterTime OR f.flightId > :afterId) " +
+            "GROUP BY f, a.seatCapacity " +
+            "HAVING COUNT(b.seatNumber) < COALESCE(a.seatCapacity, :defaultRows) * :seatsPerRow " +
+            "ORDER BY f.departureTime ASC, f.flightId ASC")
+    List<FlightAvailability> searchByRoute(
+            @Param("departureKeys") Collection<String> departureKeys,
+            @Param("arrivalKeys") Collection<String> arrivalKeys,
+            @Param("afterTime") LocalDateTime afterTime,
+            @Param("afterId") Long afterId,
+            @Param("defaultRows") int defaultRows,
+            @Param("seatsPerRow") int seatsPerRow,
+            Pageable pageable
+    );
+
+    @Query("SELECT new org.example.aircompany.dto.FlightAvailability(f, COUNT(b.seatNumber), a.seatCapacity) " +
+            "FROM Flight f LEFT JOIN f.aircraft a LEFT JOIN Booking b ON b.flight = f " +
+            "WHERE f.departureCityKey IN :departureKeys " +
             "AND f.status = 'scheduled' " +
-            "ORDER BY f.departureTime ASC")
+            "AND f.departureTime >= :afterTime " +
+            "AND (f.departureTime > :afterTime OR f.flightId > :afterId) " +
+            "GROUP BY f, a.seatCapacity " +
+            "HAVING COUNT(b.seatNumber) < COALESCE(a.seatCapacity, :defaultRows) * :seatsPerRow " +
+            "ORDER BY f.departureTime ASC, f.flightId ASC")
+    List<FlightAvailability> searchByDeparture(
+            @Param("departureKeys") Collection<String> departureKeys,
+            @Param("afterTime") LocalDateTime afterTime,
+            @Param("afterId") Long afterId,
+            @Param("defaultRows") int defaultRows,
+            @Param("seatsPerRow") int seatsPerRow,
+            Pageable pageable
+    );
 
-    List<Flight> searchFlights(
-            @Param("departureCity") String departureCity,
-            @Param("arrivalCity") String arrivalCity,
-            @Param("dateStart") LocalDateTime dateStart
+    // Индекс idx_flights_arrival
+    @Query("SELECT new org.example.aircompany.dto.FlightAvailability(f, COUNT(b.seatNumber), a.seatCapacity) " +
+            "FROM Flight f LEFT JOIN f.aircraft a LEFT JOIN Booking b ON b.flight = f " +
+            "WHERE f.arrivalCityKey IN :arrivalKeys " +
+            "AND f.status = 'scheduled' " +
+            "AND f.departureTime >= :afterTime " +
+            "AND (f.departureTime > :afterTime OR f.flightId > :afterId) " +
+            "GROUP BY f, a.seatCapacity " +
+            "HAVING COUNT(b.seatNumber) < COALESCE(a.seatCapacity, :defaultRows) * :seatsPerRow " +
+            "ORDER BY f.departureTime ASC, f.flightId ASC")
+    List<FlightAvailability> searchByArrival(
+            @Param("arrivalKeys") Collection<String> arrivalKeys,
+            @Param("afterTime") LocalDateTime afterTime,
+            @Param("afterId") Long afterId,
+            @Param("defaultRows") int defaultRows,
+            @Param("seatsPerRow") int seatsPerRow,
+            Pageable pageable
     );
 
+    // Индекс idx_flights_status_departure
+    @Query("SELECT new org.example.aircompany.dto.FlightAvailability(f, COUNT(b.seatNumber), a.seatCapacity) " +
+            "FROM Flight f LEFT JOIN f.aircraft a LEFT JOIN Booking b ON b.flight = f " +
+            "WHERE f.status = 'scheduled' " +
+            "AND f.departureTime >= :afterTime " +
+            "AND (f.departureTime > :afterTime OR f.flightId > :afterId) " +
+            "GROUP BY f, a.seatCapacity " +
+            "HAVING COUNT(b.seatNumber) < COALESCE(a.seatCapacity, :defaultRows) * :seatsPerRow " +
+            "ORDER BY f.departureTime ASC, f.flightId ASC")
+    List<FlightAvailability> searchScheduled(
+            @Param("afterTime") LocalDateTime afterTime,
+            @Param("afterId") Long afterId,
+            @Param("defaultRows") int defaultRows,
+            @Param("seatsPerRow") int seatsPerRow,
+            Pageable pageable
+    );
+
+    // Количество рейсов по каждому городу — для построения индекса городов в памяти
+    @Query("SELECT f.departureCity, COUNT(f) FROM Flight f GROUP BY f.departureCity")
+    List<Object[]> countFlightsByDepartureCity();
+
+    @Query("SELECT f.arrivalCity, COUNT(f) FROM Flight f GROUP BY f.arrivalCity")
+    List<Object[]> countFlightsByArrivalCity();
+
+    // Снимки запланированных рейсов без загрузки сущностей — для построения графа маршрутов
+    @Query("SELECT new org.example.aircompany.events.FlightSnapshot(" +
+            "f.flightId, f.flightNumber, f.departureCity, f.arrivalCity, f.departureTime, f.arrivalTime, " +
+            "f.status, f.aircraft.aircraftId, p.userId) " +
+            "FROM Flight f LEFT JOIN f.pilot p " +
+            "WHERE f.status = 'scheduled' AND f.departureTime >= :from")
+    List<FlightSnapshot> findScheduledSnapshots(@Param("from") LocalDateTime from);
+
+    // Загрузка салона по рейсам — исходные данные для сводок (RollupService).
+    // Отмененные рейсы в сводки не входят
+    @Query("SELECT new org.example.aircompany.dto.FlightLoad(" +
+            "f.flightId, f.departureCityKey, f.arrivalCityKey, f.departureCity, f.arrivalCity, " +
+            "f.departureTime, f.arrivalTime, a.aircraftId, a.model, a.seatCapacity, COUNT(b.seatNumber)) " +
+            "FROM Flight f LEFT JOIN f.aircraft a LEFT JOIN Booking b ON b.flight = f " +
+            "WHERE f.departureCityKey = :departureKey AND f.arrivalCityKey = :arrivalKey " +
+            "AND f.departureTime >= :from AND f.departureTime < :to AND f.status <> 'cancelled' " +
+            "GROUP BY f.flightId, f.departureCityKey, f.arrivalCityKey, f.departureCity, f.arrivalCity, " +
+            "f.departureTime, f.arrivalTime, a.aircraftId, a.model, a.seatCapacity")
+    List<FlightLoad> findLoadsByRoute(@Param("departureKey") String departureKey,
+                                      @Param("arrivalKey") String arrivalKey,
+                                      @Param("from") LocalDateTime from,
+                                      @Param("to") LocalDateTime to);
+
+    @Query("SELECT new org.example.aircompany.dto.FlightLoad(" +
+            "f.flightId, f.departureCityKey, f.arrivalCityKey, f.departureCity, f.arrivalCity, " +
+            "f.departureTime, f.arrivalTime, a.aircraftId, a.model, a.seatCapacity, COUNT(b.seatNumber)) " +
+            "FROM Flight f JOIN f.aircraft a LEFT JOIN Booking b ON b.flight = f " +
+            "WHERE a.aircraftId = :aircraftId " +
+            "AND f.departureTime >= :from AND f.departureTime < :to AND f.status <> 'cancelled' " +
+            "GROUP BY f.flightId, f.departureCityKey, f.arrivalCityKey, f.departureCity, f.arrivalCity, " +
+            "f.departureTime, f.arrivalTime, a.aircraftId, a.model, a.seatCapacity")
+    List<FlightLoad> findLoadsByAircraft(@Param("aircraftId") Long aircraftId,
+                                         @Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to);
+
+    // Рейсы с вылетом в [from, to) — полный пересчет сводок (ночная компактизация) идет по частям
+    @Query("SELECT new org.example.aircompany.dto.FlightLoad(" +
+            "f.flightId, f.departureCityKey, f.arrivalCityKey, f.departureCity, f.arrivalCity, " +
+            "f.departureTime, f.arrivalTime, a.aircraftId, a.model, a.seatCapacity, COUNT(b.seatNumber)) " +
+            "FROM Flight f LEFT JOIN f.aircraft a LEFT JOIN Booking b ON b.flight = f " +
+            "WHERE f.departureTime >= :from AND f.departureTime < :to AND f.status <> 'cancelled' " +
+            "GROUP BY f.flightId, f.departureCityKey, f.arrivalCityKey, f.departureCity, f.arrivalCity, " +
+            "f.departureTime, f.arrivalTime, a.aircraftId, a.model, a.seatCapacity")
+    List<FlightLoad> findLoadsBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Первый и последний вылет (одна строка; null, если рейсов нет) — границы полного пересчета сводок
+    @Query("SELECT MIN(f.departureTime), MAX(f.departureTime) FROM Flight f")
+    List<Object[]> findDepartureRange();
+
     // рейсы, назначенные конкретному пилоту
     List<Flight> findByPilot(User pilot);
+
+    // Завершенные рейсы пилота, по которым еще нет лётного журнала — анти-соединение NOT EXISTS одним запросом
+    // (индексы idx_flights_pilot_status и idx_flight_logs_flight)
+    @Query("SELECT f FROM Flight f WHERE f.pilot.userId = :pilotId AND f.status = 'completed' " +
+           "AND NOT EXISTS (SELECT l.logId FROM FlightLog l WHERE l.flight = f) " +
+           "ORDER BY f.departureTime")
+    List<Flight> findCompletedWithoutLogsByPilot(@Param("pilotId") Long pilotId);
+
+    // Рейсы удаляемых пилотов — снимки для событий до снятия назначения
+    List<Flight> findByPilotUserIdIn(Collection<Long> pilotIds);
+
+    // Снятие удаляемых пилотов со всех их рейсов одним UPDATE; версия растет, как при сохранении рейса
+    @Modifying
+    @Query("UPDATE Flight f SET f.pilot = NULL, f.version = f.version + 1 WHERE f.pilot.userId IN :pilotIds")
+    int unassignPilots(@Param("pilotIds") Collection<Long> pilotIds);
+
+    // Рейсы, на которые есть бронирования указанных пользователей — для сброса карт мест
+    @Query("SELECT f FROM Flight f WHERE f.flightId IN " +
+           "(SELECT b.flight.flightId FROM Booking b WHERE b.user.userId IN :userIds)")
+    List<Flight> findBookedByUsers(@Param("userIds") Collection<Long> userIds);
     
-    // Рейсы пилота, которые еще не завершены (не completed и не cancelled)
-    @Query("SELECT f FROM Flight f WHERE f.pilot = :pilot " +
-           "AND f.status != 'completed' AND f.status != 'cancelled'")
-    List<Flight> findActiveFlightsByPilot(@Param("pilot") User pilot);
-    
-    // Рейсы, назначенные конкретному самолету
-    List<Flight> findByAircraft(Aircraft aircraft);
-}
+    // Рейсы пилота (кроме отмененных и рейса excludeFlightId), пересекающиеся с [from, to) —
+    // проверка назначения при сохранении рейса
+    @Query("SELECT f.flightId FROM Flight f WHERE f.pilot.userId = :pilotId AND f.status != 'cancelled' " +
+           "AND f.departureTime < :to AND f.arrivalTime > :from " +
+           "AND (:excludeFlightId IS NULL OR f.flightId <> :excludeFlightId)")
+    List<Long> findOverlappingPilotFlightIds(@Param("pilotId") Long pilotId,
+                                             @Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to,
+                                             @Param("excludeFlightId") Long excludeFlightId);
+
+    // Рейсы пилота (кроме отмененных), пересекающиеся с [from, to): id, вылет, прилет —
+    // проверка лимитов налета при сохранении рейса
+    @Query("SELECT f.flightId, f.departureTime, f.arrivalTime FROM Flight f " +
+           "WHERE f.pilot.userId = :pilotId AND f.status != 'cancelled' " +
+           "AND f.departureTime < :to AND f.arrivalTime > :from")
+    List<Object[]> findPilotFlightTimes(@Param("pilotId") Long pilotId,
+                                        @Param("from") LocalDateTime from,
+                                        @Param("to") LocalDateTime to);
+
+    // То же для самолета — вне горизонта FlightScheduleIndex
+    @Query("SELECT f.flightId FROM Flight f WHERE f.aircraft.aircraftId = :aircraftId AND f.status != 'cancelled' " +
+           "AND f.departureTime < :to AND f.arrivalTime > :from " +
+           "AND (:excludeFlightId IS NULL OR f.flightId <> :excludeFlightId)")
+    List<Long> findOverlappingAircraftFlightIds(@Param("aircraftId") Long aircraftId,
+                                                @Param("from") LocalDateTime from,
+                                                @Param("to") LocalDateTime to,
+                                                @Param("excludeFlightId") Long excludeFlightId);
+
+    // Снимки рейсов (кроме отмененных), прилетающих не раньше from — для расписаний пилотов и самолетов
+    @Query("SELECT new org.example.aircompany.events.FlightSnapshot(" +
+            "f.flightId, f.flightNumber, f.departureCity, f.arrivalCity, f.departureTime, f.arrivalTime, " +
+            "f.status, a.aircraftId, p.userId) " +
+            "FROM Flight f LEFT JOIN f.aircraft a LEFT JOIN f.pilot p " +
+            "WHERE f.status != 'cancelled' AND f.arrivalTime >= :from")
+    List<FlightSnapshot> findScheduleSnapshots(@Param("from") LocalDateTime from);
+
+    // Рейсы, ожидающие вылета раньше until (включая просроченные), по времени вылета — очередь
+    // FlightStatusScheduler (индекс idx_flights_status_departure). Сколько загрузить за раз, задает Pageable
+    @Query("SELECT f.flightId, f.departureTime FROM Flight f " +
+           "WHERE f.status IN ('scheduled', 'delayed') AND f.departureTime < :until ORDER BY f.departureTime")
+    List<Object[]> findPendingDepartures(@Param("until") LocalDateTime until, Pageable pageable);
+
+    // Рейсы в воздухе с прилетом раньше until, по времени прилета (индекс idx_flights_status_arrival)
+    @Query("SELECT f.flightId, f.arrivalTime FROM Flight f WHERE f.status = 'in_flight' AND f.arrivalTime < :until " +
+           "ORDER BY f.arrivalTime")
+    List<Object[]> findPendingArrivals(@Param("until") LocalDateTime until, Pageable pageable);
+
+    // Снимки группы рейсов одним запросом — для событий FlightChangedEvent при пакетной смене статуса
+    @Query("SELECT new org.example.aircompany.events.FlightSnapshot(" +
+            "f.flightId, f.flightNumber, f.departureCity, f.arrivalCity, f.departureTime, f.arrivalTime, " +
+            "f.status, a.aircraftId, p.userId) " +
+            "FROM Flight f LEFT JOIN f.aircraft a LEFT JOIN f.pilot p " +
+            "WHERE f.flightId IN :ids")
+    List<FlightSnapshot> findSnapshotsByIds(@Param("ids") Collection<Long> ids);
+
+    // Вылет группы рейсов одним UPDATE. Статус и время проверяются повторно: рейс могли изменить
+    // вручную после постановки в очередь. Версия увеличивается — открытая форма рейса получит конфликт
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Flight f SET f.status = 'in_flight', f.version = f.version + 1 " +
+           "WHERE f.flightId IN :ids AND f.status IN ('scheduled', 'delayed') AND f.departureTime <= :now")
+    int markDeparted(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // Прилет группы рейсов одним UPDATE (с теми же повторными проверками)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Flight f SET f.status = 'completed', f.version = f.version + 1 " +
+           "WHERE f.flightId IN :ids AND f.status = 'in_flight' AND f.arrivalTime <= :now")
+    int markArrived(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+}
\ No newline at end of file
@@ -2,5 +2,16 @@ package org.example.aircompany.repositories;
 
 import org.example.aircompany.model.Passenger;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface PassengerRepository extends JpaRepository<Passenger, Long> {}
\ No newline at end of file
+import java.util.Collection;
+
+public interface PassengerRepository extends JpaRepository<Passenger, Long> {
+
+    // Данные пассажиров удаляемых пользователей — одним DELETE
+    @Modifying
+    @Query("DELETE FROM Passenger p WHERE p.user.userId IN :userIds")
+    int deleteByUserIds(@Param("userIds") Collection<Long> userIds);
+}
@@ -3,12 +3,19 @@ package org.example.aircompany.repositories;
 import org.example.aircompany.model.RolesHistory;
 import org.example.aircompany.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface RolesHistoryRepository extends JpaRepository<RolesHistory, Long> {
     List<RolesHistory> findByTargetUser(User targetUser);
     List<RolesHistory> findByAdminUser(User adminUser);
-    void deleteByTargetUser(User targetUser);
-    void deleteByAdminUser(User adminUser);
+
+    // Одним DELETE все записи, где пользователь — цель или администратор (при удалении пользователей)
+    @Modifying
+    @Query("DELETE FROM RolesHistory r WHERE r.targetUser.userId IN :userIds OR r.adminUser.userId IN :userIds")
+    int deleteByUserIds(@Param("userIds") Collection<Long> userIds);
 }
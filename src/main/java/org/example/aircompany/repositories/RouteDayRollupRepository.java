@@ -0,0 +1,31 @@
+package org.example.aircompany.repositories;
+
+import org.example.aircompany.model.RouteDayRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface RouteDayRollupRepository extends JpaRepository<RouteDayRollup, Long> {
+
+    Optional<RouteDayRollup> findByDepartureCityKeyAndArrivalCityKeyAndFlightDate(
+            String departureCityKey, String arrivalCityKey, LocalDate flightDate);
+
+    // Индекс idx_route_day_rollups_date
+    List<RouteDayRollup> findByFlightDateBetweenOrderByFlightDateAscDepartureCityAscArrivalCityAsc(
+            LocalDate from, LocalDate to);
+
+    // Строки за дни [from, to) — компактизация пересчитывает сводки по частям
+    @Modifying
+    @Query("DELETE FROM RouteDayRollup r WHERE r.flightDate >= :from AND r.flightDate < :to")
+    int deleteByFlightDateRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Строки вне дней [from, to), в которые есть рейсы
+    @Modifying
+    @Query("DELETE FROM RouteDayRollup r WHERE r.flightDate < :from OR r.flightDate >= :to")
+    int deleteOutsideFlightDateRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,20 @@
+package org.example.aircompany.repositories;
+
+import org.example.aircompany.model.TokenRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Long> {
+
+    // Индекс idx_token_revocations_revoked_at
+    List<TokenRevocation> findByRevokedAtGreaterThanEqual(long since);
+
+    // Отзывы старше срока жизни токена обновления уже ничего не отсекают
+    @Modifying
+    @Query("DELETE FROM TokenRevocation r WHERE r.revokedAt < :before")
+    int deleteOlderThan(@Param("before") long before);
+}
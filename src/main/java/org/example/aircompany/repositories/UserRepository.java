@@ -1,12 +1,65 @@
 package org.example.aircompany.repositories;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.example.aircompany.dto.UserListItem;
 import org.example.aircompany.model.User;
+import org.example.aircompany.model.UserRole;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    // Обратная связь passengerDetails (OneToOne) не может быть ленивой —
+    // без плана выборки Hibernate догружает ее отдельным запросом на каждого пользователя
+    @Override
+    @EntityGraph(attributePaths = "passengerDetails")
+    List<User> findAll();
+
     // Метод для поиска пользователя по логину (username).
     // Нужен для Spring Security.
+    // Результат кэшируется (кэш запросов Hibernate): сбрасывается при любой записи в таблицу users
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "users-by-username")
+    })
     Optional<User> findByUsername(String username);
+
+    // Пилот с блокировкой строки до конца транзакции (SELECT ... FOR UPDATE, мимо кэша второго уровня):
+    // назначения одного пилота на рейсы проверяются и сохраняются по очереди, в том числе на разных узлах
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.userId = :userId")
+    Optional<User> findByIdForUpdate(@Param("userId") Long userId);
+
+    // Пользователи одной роли (индекс idx_users_role) — вместе с данными пассажира, без догрузки по одному
+    @EntityGraph(attributePaths = "passengerDetails")
+    List<User> findByRoleOrderByUserId(UserRole role);
+
+    // Количество пользователей каждой роли — для счетчиков статистики (индекс idx_users_role)
+    @Query("SELECT u.role, COUNT(u) FROM User u GROUP BY u.role")
+    List<Object[]> countUsersByRole();
+
+    // Список пользователей для администратора: без хэша пароля и данных пассажира
+    @Query("SELECT new org.example.aircompany.dto.UserListItem(u.userId, u.username, u.role) " +
+            "FROM User u ORDER BY u.userId")
+    List<UserListItem> findListItems();
+
+    // Удаляемые пользователи: id, логин и роль — для событий, без загрузки сущностей и данных пассажира
+    @Query("SELECT new org.example.aircompany.dto.UserListItem(u.userId, u.username, u.role) " +
+            "FROM User u WHERE u.userId IN :userIds")
+    List<UserListItem> findListItemsByIds(@Param("userIds") Collection<Long> userIds);
+
+    // Последний шаг удаления: изменения рейсов сбрасываются в БД до DELETE, контекст очищается после
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM User u WHERE u.userId IN :userIds")
+    int deleteByIds(@Param("userIds") Collection<Long> userIds);
 }
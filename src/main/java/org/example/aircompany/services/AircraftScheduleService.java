@@ -0,0 +1,81 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.model.Aircraft;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.repositories.FlightRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Расписание самолетов: для каждого самолета — дерево интервалов по времени его рейсов (кроме отмененных),
+ * индекс по самолетам в FlightScheduleIndex.
+ *
+ * Самолет можно назначить на рейс, если ни один другой его рейс не пересекается по времени
+ * с новым с учетом минимального времени оборота aircompany.aircraft.min-turnaround-minutes.
+ * Раньше занятость определялась статусом самолета (in_flight при назначении на любой рейс),
+ * из-за чего самолет мог быть назначен только на один незавершенный рейс.
+ *
+ * Списки свободных самолетов для формы рейса строятся по индексу в памяти. Проверка при сохранении (findConflict)
+ * идет по БД: FlightService.saveFlight вызывает ее под блокировкой строки самолета.
+ */
+@Service
+public class AircraftScheduleService {
+
+    private final FlightRepository flightRepository;
+    private final FlightScheduleIndex scheduleIndex;
+    private final long turnaroundMinutes;
+
+    public AircraftScheduleService(FlightRepository flightRepository,
+                                   FlightScheduleIndex scheduleIndex,
+                                   @Value("${aircompany.aircraft.min-turnaround-minutes:45}") long turnaroundMinutes) {
+        this.flightRepository = flightRepository;
+        this.scheduleIndex = scheduleIndex;
+        this.turnaroundMinutes = turnaroundMinutes;
+    }
+
+    /**
+     * Рейс самолета, с которым пересекается рейс [departure, arrival) с учетом времени оборота;
+     * null — самолет свободен. Сам рейс excludeFlightId (при редактировании) не учитывается. Один запрос к БД.
+     */
+    public Long findConflict(Long aircraftId, LocalDateTime departure, LocalDateTime arrival, Long excludeFlightId) {
+        if (aircraftId == null || departure == null || arrival == null || !departure.isBefore(arrival)) {
+            return null;
+        }
+        return flightRepository.findOverlappingAircraftFlightIds(aircraftId, departure.minusMinutes(turnaroundMinutes),
+                        arrival.plusMinutes(turnaroundMinutes), excludeFlightId).stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Самолеты из списка, которые можно назначить на рейс: не на обслуживании и свободные на его время.
+     * Если время рейса еще не задано или рейс лежит до горизонта индекса — все не на обслуживании
+     * (проверка выполнится при сохранении через findConflict). Одна блокировка на весь список.
+     */
+    public List<Aircraft> availableAircraft(List<Aircraft> fleet, Flight flight) {
+        List<Aircraft> serviceable = fleet.stream()
+                .filter(a -> a.getStatus() != Aircraft.AircraftStatus.in_maintenance)
+                .toList();
+        LocalDateTime departure = flight.getDepartureTime();
+        LocalDateTime arrival = flight.getArrivalTime();
+        if (departure == null || arrival == null || !departure.isBefore(arrival) || !indexed(departure)) {
+            return serviceable;
+        }
+        return scheduleIndex.read(FlightScheduleIndex.Owner.AIRCRAFT, index -> serviceable.stream()
+                .filter(a -> index.findOverlap(a.getAircraftId(), departure, arrival, turnaroundMinutes,
+                        flight.getFlightId()) == null)
+                .toList());
+    }
+
+    public long getTurnaroundMinutes() {
+        return turnaroundMinutes;
+    }
+
+    // Все рейсы, которые могут пересечься с вылетом departure (с учетом оборота), есть в индексе
+    private boolean indexed(LocalDateTime departure) {
+        return FlightScheduleIndex.covers(departure.minusMinutes(turnaroundMinutes));
+    }
+}
@@ -1,8 +1,12 @@
 package org.example.aircompany.services;
 
+import org.example.aircompany.dto.AircraftListItem;
+import org.example.aircompany.events.CounterChangedEvent;
 import org.example.aircompany.model.Aircraft;
 import org.example.aircompany.repositories.AircraftRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,16 +14,29 @@ import java.util.Optional;
 public class AircraftService {
 
     private final AircraftRepository aircraftRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public AircraftService(AircraftRepository aircraftRepository) {
+    public AircraftService(AircraftRepository aircraftRepository,
+                           ApplicationEventPublisher eventPublisher) {
         this.aircraftRepository = aircraftRepository;
+        this.eventPublisher = eventPublisher;
     }
 
-    // Получение всех самолетов (используется в FlightController для выпадающего списка)
+    // Получение всех самолетов (используется в FlightController для выпадающего списка; результат в кэше запросов)
     public List<Aircraft> findAllAircrafts() {
         return aircraftRepository.findAll();
     }
 
+    // Самолеты в статусе in_flight без рейса в воздухе и без рейса, ожидающего технической проверки
+    public List<Aircraft> findHeldWithoutFlight() {
+        return aircraftRepository.findHeldWithoutFlight();
+    }
+
+    // Строки для списка самолетов
+    public List<AircraftListItem> findAircraftList() {
+        return aircraftRepository.findListItems();
+    }
+
     // Получение самолета по ID
     public Optional<Aircraft> findAircraftById(Long id) {
         return aircraftRepository.findById(id);
@@ -27,20 +44,55 @@ public class AircraftService {
 
     // Сохранение/Обновление самолета
     public Aircraft saveAircraft(Aircraft aircraft) {
-        return aircraftRepository.save(aircraft);
+        // Прежний статус — для счетчиков статистики (самолет читается из кэша второго уровня)
+        Aircraft.AircraftStatus oldStatus = aircraft.getAircraftId() != null
+                ? aircraftRepository.findById(aircraft.getAircraftId()).map(Aircraft::getStatus).orElse(null)
+                : null;
+        Aircraft saved = aircraftRepository.save(aircraft);
+        statusChanged(oldStatus, saved.getStatus());
+        return saved;
+    }
+
+    // Смена статуса самолета бизнес-логикой рейсов и лётных журналов
+    public void changeStatus(Aircraft aircraft, Aircraft.AircraftStatus status) {
+        Aircraft.AircraftStatus oldStatus = aircraft.getStatus();
+        aircraft.setStatus(status);
+        aircraftRepository.save(aircraft);
+        statusChanged(oldStatus, status);
+    }
+
+    // Самолеты вылетевших рейсов переходят в in_flight (FlightStatusScheduler) — один запрос на группу
+    public int markInFlight(Collection<Long> aircraftIds) {
+        if (aircraftIds.isEmpty()) {
+            return 0;
+        }
+        int updated = aircraftRepository.markInFlight(aircraftIds);
+        if (updated > 0) {
+            eventPublisher.publishEvent(CounterChangedEvent.aircraft(Aircraft.AircraftStatus.active, -updated));
+            eventPublisher.publishEvent(CounterChangedEvent.aircraft(Aircraft.AircraftStatus.in_flight, updated));
+        }
+        return updated;
     }
 
     // Удаление самолета
     public void deleteAircraft(Long id) {
         // Доп. логика: проверка, не привязан ли самолет к активным рейсам
+        Optional<Aircraft> aircraft = aircraftRepository.findById(id);
         aircraftRepository.deleteById(id);
+        aircraft.ifPresent(a -> statusChanged(a.getStatus(), null));
     }
 
-    public long countByStatus(String statusName) {
-        return aircraftRepository.findAll()
-                .stream()
-                .filter(a -> a.getStatus().name().equals(statusName))
-                .count();
+    // null — самолета в этом статусе нет (создан или удален)
+    private void statusChanged(Aircraft.AircraftStatus oldStatus, Aircraft.AircraftStatus newStatus) {
+        if (oldStatus == newStatus) {
+            return;
+        }
+        if (oldStatus != null) {
+            eventPublisher.publishEvent(CounterChangedEvent.aircraft(oldStatus, -1));
+        }
+        if (newStatus != null) {
+            eventPublisher.publishEvent(CounterChangedEvent.aircraft(newStatus, 1));
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,344 @@
+package org.example.aircompany.services;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.aircompany.config.AuthenticatedUser;
+import org.example.aircompany.events.TokensRevokedEvent;
+import org.example.aircompany.model.TokenRevocation;
+import org.example.aircompany.model.User;
+import org.example.aircompany.model.UserRole;
+import org.example.aircompany.repositories.TokenRevocationRepository;
+import org.example.aircompany.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Вход без серверной сессии (aircompany.auth.stateless=true): после входа по форме
+ * выдаются две подписанные HMAC-SHA256 cookie — короткоживущий токен доступа (id, логин, роль)
+ * и токен обновления. Токен доступа проверяется без обращения к БД и сессии, поэтому
+ * запросы могут обслуживаться любым узлом с тем же aircompany.auth.token-secret.
+ * Без секрета или с секретом короче 32 байт приложение с stateless=true не запускается.
+ *
+ * Когда токен доступа истек, TokenAuthenticationFilter обновляет его по токену обновления —
+ * это единственное обращение к БД (пользователь мог быть удален или сменить роль).
+ *
+ * Отзыв: UserService при смене роли и удалении пользователя вызывает revoke — все токены,
+ * выданные пользователю до этого момента, становятся недействительны. На своем узле сразу,
+ * на остальных — после очередного опроса таблицы token_revocations (revocation-poll-ms);
+ * при опросе сбрасываются и закэшированные данные для входа этих пользователей (TokensRevokedEvent).
+ * Выход (logout) отзывает токены пользователя так же — токен обновления, скопированный до выхода,
+ * перестает действовать; выход завершает все сеансы пользователя.
+ */
+@Service
+public class AuthTokenService {
+
+    public static final String ACCESS_COOKIE = "AC_ACCESS";
+    public static final String REFRESH_COOKIE = "AC_REFRESH";
+
+    private static final String ACCESS = "access";
+    private static final String REFRESH = "refresh";
+    private static final String HMAC = "HmacSHA256";
+
+    // Ключ HMAC-SHA256 не короче выхода хеш-функции
+    private static final int MIN_SECRET_BYTES = 32;
+
+    // Запись отзыва видна другим узлам только после коммита, поэтому опрос захватывает
+    // и немного более ранние записи
+    private static final long POLL_OVERLAP_MILLIS = 60_000;
+
+    private final TokenRevocationRepository revocationRepository;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final SecretKeySpec key;
+    private final long accessTtlMillis;
+    private final long refreshTtlMillis;
+    private final boolean secureCookies;
+
+    // id пользователя → момент последнего отзыва
+    private final Map<Long, Long> revokedAt = new ConcurrentHashMap<>();
+    private volatile long lastSyncAt;
+
+    public AuthTokenService(TokenRevocationRepository revocationRepository,
+                            UserRepository userRepository,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${aircompany.auth.stateless:false}") boolean enabled,
+                            @Value("${aircompany.auth.token-secret:}") String secret,
+                            @Value("${aircompany.auth.access-ttl-seconds:300}") long accessTtlSeconds,
+                            @Value("${aircompany.auth.refresh-ttl-seconds:86400}") long refreshTtlSeconds,
+                            @Value("${aircompany.auth.cookie-secure:false}") boolean secureCookies) {
+        this.revocationRepository = revocationRepository;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.key = new SecretKeySpec(enabled ? requireSecret(secret) : randomSecret(), HMAC);
+        this.accessTtlMillis = accessTtlSeconds * 1000;
+        this.refreshTtlMillis = refreshTtlSeconds * 1000;
+        this.secureCookies = secureCookies;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Выдача обоих токенов после входа по форме
+    public void issue(AuthenticatedUser user, HttpServletResponse response) {
+        long now = System.currentTimeMillis();
+        UserRole role = UserRole.valueOf(user.getAuthorities().iterator().next().getAuthority());
+        Claims access = new Claims(ACCESS, user.getUserId(), user.getUsername(), role, now, now + accessTtlMillis);
+        Claims refresh = new Claims(REFRESH, user.getUserId(), user.getUsername(), role, now, now + refreshTtlMillis);
+        addCookie(response, ACCESS_COOKIE, sign(access), accessTtlMillis);
+        addCookie(response, REFRESH_COOKIE, sign(refresh), refreshTtlMillis);
+    }
+
+    /**
+     * Пользователь по cookie запроса: по действующему токену доступа — без БД,
+     * иначе по токену обновления с выдачей нового токена доступа.
+     * Недействительные cookie удаляются.
+     */
+    public Optional<AuthenticatedUser> authenticate(HttpServletRequest request, HttpServletResponse response) {
+        String accessToken = cookie(request, ACCESS_COOKIE);
+        String refreshToken = cookie(request, REFRESH_COOKIE);
+        if (accessToken == null && refreshToken == null) {
+            return Optional.empty();
+        }
+        long now = System.currentTimeMillis();
+
+        Claims access = verify(accessToken, ACCESS, now);
+        if (access != null) {
+            return Optional.of(principal(access.userId(), access.username(), access.role()));
+        }
+
+        Claims refresh = verify(refreshToken, REFRESH, now);
+        if (refresh != null) {
+            Optional<User> user = userRepository.findById(refresh.userId());
+            if (user.isPresent()) {
+                User current = user.get();
+                Claims renewed = new Claims(ACCESS, current.getUserId(), current.getUsername(), current.getRole(),
+                        now, now + accessTtlMillis);
+                addCookie(response, ACCESS_COOKIE, sign(renewed), accessTtlMillis);
+                return Optional.of(principal(current.getUserId(), current.getUsername(), current.getRole()));
+            }
+        }
+
+        addCookie(response, ACCESS_COOKIE, "", 0);
+        addCookie(response, REFRESH_COOKIE, "", 0);
+        return Optional.empty();
+    }
+
+    // Вызывается в транзакции смены роли или удаления пользователя
+    public void revoke(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        TokenRevocation revocation = new TokenRevocation();
+        revocation.setUserId(userId);
+        revocation.setRevokedAt(now);
+        revocationRepository.save(revocation);
+        revokedAt.merge(userId, now, Math::max);
+    }
+
+    // Выход: токены пользователя из cookie запроса (если они действительны) отзываются
+    @Transactional
+    public void logout(HttpServletRequest request) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Claims claims = verify(cookie(request, REFRESH_COOKIE), REFRESH, now);
+        if (claims == null) {
+            claims = verify(cookie(request, ACCESS_COOKIE), ACCESS, now);
+        }
+        if (claims != null) {
+            revoke(claims.userId());
+        }
+    }
+
+    // Отзыв для группы удаляемых пользователей
+    public void revokeAll(Collection<Long> userIds) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<TokenRevocation> revocations = new ArrayList<>();
+        for (Long userId : userIds) {
+            TokenRevocation revocation = new TokenRevocation();
+            revocation.setUserId(userId);
+            revocation.setRevokedAt(now);
+            revocations.add(revocation);
+            revokedAt.merge(userId, now, Math::max);
+        }
+        revocationRepository.saveAll(revocations);
+    }
+
+    // Отзывы с других узлов; отзывы старше срока жизни токена обновления удаляются
+    @Scheduled(fixedDelayString = "${aircompany.auth.revocation-poll-ms:5000}")
+    @Transactional
+    public void syncRevocations() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long since = lastSyncAt == 0 ? 0 : lastSyncAt - POLL_OVERLAP_MILLIS;
+        Set<Long> revoked = new HashSet<>();
+        for (TokenRevocation revocation : revocationRepository.findByRevokedAtGreaterThanEqual(since)) {
+            Long known = revokedAt.get(revocation.getUserId());
+            if (known == null || known < revocation.getRevokedAt()) {
+                revokedAt.merge(revocation.getUserId(), revocation.getRevokedAt(), Math::max);
+                revoked.add(revocation.getUserId());
+            }
+        }
+        lastSyncAt = now;
+        if (!revoked.isEmpty()) {
+            eventPublisher.publishEvent(new TokensRevokedEvent(revoked));
+        }
+
+        long expired = now - refreshTtlMillis;
+        revokedAt.values().removeIf(at -> at < expired);
+        revocationRepository.deleteOlderThan(expired);
+    }
+
+    private Claims verify(String token, String type, long now) {
+        Claims claims = parse(token);
+        if (claims == null || !claims.type().equals(type) || claims.expiresAt() <= now) {
+            return null;
+        }
+        Long revoked = revokedAt.get(claims.userId());
+        if (revoked != null && claims.issuedAt() <= revoked) {
+            return null;
+        }
+        return claims;
+    }
+
+    // Токен: base64url(тип|id|логин|роль|выдан|истекает) + "." + base64url(HMAC)
+    private String sign(Claims claims) {
+        String payload = String.join("|",
+                claims.type(),
+                String.valueOf(claims.userId()),
+                Base64.getUrlEncoder().withoutPadding().encodeToString(claims.username().getBytes(StandardCharsets.UTF_8)),
+                claims.role().name(),
+                String.valueOf(claims.issuedAt()),
+                String.valueOf(claims.expiresAt()));
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(hmac(payloadBytes));
+    }
+
+    private Claims parse(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payloadBytes = decoder.decode(token.substring(0, dot));
+            byte[] signature = decoder.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(hmac(payloadBytes), signature)) {
+                return null;
+            }
+            String[] parts = new String(payloadBytes, StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 6) {
+                return null;
+            }
+            return new Claims(parts[0],
+                    Long.parseLong(parts[1]),
+                    new String(decoder.decode(parts[2]), StandardCharsets.UTF_8),
+                    UserRole.valueOf(parts[3]),
+                    Long.parseLong(parts[4]),
+                    Long.parseLong(parts[5]));
+        } catch (IllegalArgumentException e) {
+            // Испорченный base64, число или роль
+            return null;
+        }
+    }
+
+    private byte[] hmac(byte[] data) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC недоступен", e);
+        }
+    }
+
+    private void addCookie(HttpServletResponse response, String name, String value, long maxAgeMillis) {
+        ResponseCookie cookie = ResponseCookie.from(name, value)
+                .httpOnly(true)
+                .secure(secureCookies)
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(Duration.ofMillis(maxAgeMillis))
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    private static String cookie(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (cookie.getName().equals(name) && !cookie.getValue().isEmpty()) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static AuthenticatedUser principal(Long userId, String username, UserRole role) {
+        Collection<GrantedAuthority> authorities = Collections.singleton(new SimpleGrantedAuthority(role.name()));
+        // Пароль в токене не передается; пустая строка — требование конструктора User
+        return new AuthenticatedUser(userId, username, "", authorities);
+    }
+
+    // Без секрета токены подписываются случайным ключом: действуют только на этом узле и до перезапуска
+    // Секрет stateless-входа: без него или с коротким узлы не примут токены друг друга или их можно подобрать
+    private static byte[] requireSecret(String secret) {
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (secret.isBlank() || bytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("aircompany.auth.stateless=true требует aircompany.auth.token-secret длиной не менее "
+                    + MIN_SECRET_BYTES + " байт (общего для всех узлов)");
+        }
+        return bytes;
+    }
+
+    private static byte[] randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    private record Claims(String type, Long userId, String username, UserRole role, long issuedAt, long expiresAt) {
+    }
+}
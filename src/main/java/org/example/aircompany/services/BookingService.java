@@ -1,20 +1,47 @@
 package org.example.aircompany.services;
 
+import org.example.aircompany.dto.BookingListItem;
+import org.example.aircompany.events.CounterChangedEvent;
+import org.example.aircompany.events.FlightSnapshot;
+import org.example.aircompany.events.SeatsChangedEvent;
 import org.example.aircompany.model.Booking;
 import org.example.aircompany.model.Flight;
 import org.example.aircompany.model.User;
 import org.example.aircompany.repositories.BookingRepository;
+import org.example.aircompany.repositories.FlightRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class BookingService {
 
-    private final BookingRepository bookingRepository;
+    // Сколько раз повторяем вставку бронирования при конфликте блокировок в БД (deadlock на уникальном индексе)
+    private static final int MAX_SAVE_ATTEMPTS = 3;
+
+    // Уникальный индекс (user_id, flight_id) — см. Booking
+    private static final String USER_FLIGHT_CONSTRAINT = "uk_bookings_user_flight";
 
-    public BookingService(BookingRepository bookingRepository) {
+    private final BookingRepository bookingRepository;
+    private final FlightRepository flightRepository;
+    private final SeatInventoryService seatInventoryService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public BookingService(BookingRepository bookingRepository,
+                          FlightRepository flightRepository,
+                          SeatInventoryService seatInventoryService,
+                          ApplicationEventPublisher eventPublisher) {
         this.bookingRepository = bookingRepository;
+        this.flightRepository = flightRepository;
+        this.seatInventoryService = seatInventoryService;
+        this.eventPublisher = eventPublisher;
     }
 
     /** CRUD-операции для Сотрудника службы бронирования */
@@ -22,18 +49,61 @@ public class BookingService {
     // Сохранение/Обновление бронирования (Update)
     // Пассажир создает бронирование через отдельный контроллер, а сотрудник его обновляет (например, меняет статус).
     public Booking saveBooking(Booking booking) {
-        // Проверка доступности места при изменении
-        if (booking.getSeatNumber() != null && !booking.getSeatNumber().trim().isEmpty()) {
-            // Проверяем, не занято ли место другим бронированием (кроме текущего)
-            List<Booking> bookingsWithSameSeat = bookingRepository.findByFlight(booking.getFlight()).stream()
-                    .filter(b -> booking.getSeatNumber().trim().equals(b.getSeatNumber()) 
-                            && !b.getBookingId().equals(booking.getBookingId()))
-                    .toList();
-            if (!bookingsWithSameSeat.isEmpty()) {
-                throw new IllegalStateException("Место " + booking.getSeatNumber() + " уже занято");
+        String seatNumber = normalizeSeat(booking.getSeatNumber());
+        booking.setSeatNumber(seatNumber);
+        boolean created = booking.getBookingId() == null;
+
+        // Прежнее состояние бронирования (при редактировании) — чтобы освободить старое место
+        Booking previous = booking.getBookingId() != null
+                ? bookingRepository.findById(booking.getBookingId()).orElse(null)
+                : null;
+        boolean sameSeat = previous != null
+                && previous.getFlight().getFlightId().equals(booking.getFlight().getFlightId())
+                && seatNumber != null && seatNumber.equals(previous.getSeatNumber());
+
+        // Проверка доступности места при изменении: атомарно занимаем бит в карте мест рейса
+        boolean reserved = false;
+        if (seatNumber != null && !sameSeat) {
+            if (!seatInventoryService.tryReserve(booking.getFlight(), seatNumber)) {
+                throw new IllegalStateException("Место " + seatNumber + " уже занято");
+            }
+            reserved = true;
+        }
+
+        Booking saved;
+        try {
+            saved = bookingRepository.save(booking);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            if (reserved) {
+                seatInventoryService.release(booking.getFlight(), seatNumber);
+            }
+            throw new IllegalStateException("Бронирование было изменено другим пользователем. Обновите страницу и повторите попытку");
+        } catch (DataIntegrityViolationException e) {
+            if (violates(e, USER_FLIGHT_CONSTRAINT)) {
+                if (reserved) {
+                    seatInventoryService.release(booking.getFlight(), seatNumber);
+                }
+                throw new IllegalStateException("У пассажира уже есть бронирование на этот рейс");
+            }
+            throw seatTaken(booking.getFlight(), seatNumber, e);
+        } catch (RuntimeException e) {
+            if (reserved) {
+                seatInventoryService.release(booking.getFlight(), seatNumber);
             }
+            throw e;
         }
-        return bookingRepository.save(booking);
+
+        if (previous != null && !sameSeat) {
+            seatInventoryService.release(previous.getFlight(), previous.getSeatNumber());
+            seatsChanged(previous.getFlight());
+        }
+        if (!sameSeat) {
+            seatsChanged(booking.getFlight());
+        }
+        if (created) {
+            eventPublisher.publishEvent(CounterChangedEvent.bookings(1));
+        }
+        return saved;
     }
 
     // Чтение всех бронирований
@@ -41,6 +111,11 @@ public class BookingService {
         return bookingRepository.findAll();
     }
 
+    // Строки для списка бронирований (без загрузки сущностей)
+    public List<BookingListItem> findBookingList() {
+        return bookingRepository.findListItems();
+    }
+
     // Чтение одного бронирования по ID
     public Optional<Booking> findBookingById(Long id) {
         return bookingRepository.findById(id);
@@ -48,30 +123,108 @@ public class BookingService {
 
     // Удаление бронирования (Delete)
     public void deleteBooking(Long id) {
-        bookingRepository.deleteById(id);
+        bookingRepository.findById(id).ifPresent(booking -> {
+            bookingRepository.delete(booking);
+            seatInventoryService.release(booking.getFlight(), booking.getSeatNumber());
+            seatsChanged(booking.getFlight());
+            eventPublisher.publishEvent(CounterChangedEvent.bookings(-1));
+        });
+    }
+
+    /**
+     * Удаление всех бронирований группы пользователей одним DELETE (при удалении пользователей).
+     * Карты мест затронутых рейсов не правятся по одному месту, а сбрасываются после фиксации
+     * и перестраиваются из БД.
+     *
+     * @return количество удаленных бронирований
+     */
+    @Transactional
+    public int deleteBookingsByUsers(Collection<Long> userIds) {
+        List<Flight> flights = flightRepository.findBookedByUsers(userIds);
+        if (flights.isEmpty()) {
+            return 0;
+        }
+        int deleted = bookingRepository.deleteByUserIds(userIds);
+        seatInventoryService.invalidateAfterCommit(flights.stream().map(Flight::getFlightId).toList());
+        flights.forEach(this::seatsChanged);
+        eventPublisher.publishEvent(CounterChangedEvent.bookings(-deleted));
+        return deleted;
     }
 
     public Booking createBookingForPassenger(User passenger, Flight flight, String seatNumber) {
 
+        // Быстрая проверка без занятия места; гарантию при параллельных запросах дает индекс uk_bookings_user_flight
         if (bookingRepository.existsByUserAndFlight(passenger, flight)) {
             throw new IllegalStateException("Вы уже забронировали этот рейс");
         }
 
-        // Проверка занятости места
-        if (seatNumber != null && !seatNumber.trim().isEmpty()) {
-            if (bookingRepository.existsByFlightAndSeatNumber(flight, seatNumber.trim())) {
-                throw new IllegalStateException("Место " + seatNumber + " уже занято");
-            }
+        String seat = normalizeSeat(seatNumber);
+
+        // Проверка занятости места: атомарно занимаем бит в карте мест рейса
+        if (seat != null && !seatInventoryService.tryReserve(flight, seat)) {
+            throw new IllegalStateException("Место " + seat + " уже занято");
         }
 
         Booking booking = new Booking();
         booking.setUser(passenger);
         booking.setFlight(flight);
         booking.setStatus(Booking.BookingStatus.confirmed);
-        if (seatNumber != null && !seatNumber.trim().isEmpty()) {
-            booking.setSeatNumber(seatNumber.trim());
+        booking.setSeatNumber(seat);
+        Booking saved;
+        try {
+            saved = saveWithRetry(booking);
+        } catch (DataIntegrityViolationException e) {
+            if (violates(e, USER_FLIGHT_CONSTRAINT)) {
+                // Параллельный запрос того же пассажира успел забронировать рейс — место этого запроса свободно
+                seatInventoryService.release(flight, seat);
+                throw new IllegalStateException("Вы уже забронировали этот рейс");
+            }
+            throw seatTaken(flight, seat, e);
+        } catch (RuntimeException e) {
+            // Бронирование не сохранилось — возвращаем место в карту
+            seatInventoryService.release(flight, seat);
+            throw e;
+        }
+        seatsChanged(flight);
+        eventPublisher.publishEvent(CounterChangedEvent.bookings(1));
+        return saved;
+    }
+
+    // Повторяет вставку, если БД отклонила ее из-за конфликта блокировок (а не из-за занятого места)
+    private Booking saveWithRetry(Booking booking) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return bookingRepository.save(booking);
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= MAX_SAVE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Уникальный индекс (flight_id, seat_number) отклонил вставку: место заняли параллельно,
+     * в обход карты мест этого процесса (например, на другом узле). Карта рейса устарела —
+     * сбрасываем ее, чтобы она перестроилась из БД.
+     */
+    private RuntimeException seatTaken(Flight flight, String seatNumber, DataIntegrityViolationException e) {
+        if (seatNumber == null) {
+            return e;
         }
-        return bookingRepository.save(booking);
+        seatInventoryService.invalidate(flight.getFlightId());
+        return new IllegalStateException("Место " + seatNumber + " уже занято");
+    }
+
+    // Какой уникальный индекс отклонил запись — по имени в сообщении драйвера
+    private static boolean violates(DataIntegrityViolationException e, String constraint) {
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null && message.contains(constraint);
+    }
+
+    // Занятость мест рейса изменилась — результаты поиска со свободными местами устарели
+    private void seatsChanged(Flight flight) {
+        eventPublisher.publishEvent(new SeatsChangedEvent(FlightSnapshot.of(flight)));
     }
 
     public List<Booking> findBookingsByUser(User user) {
@@ -83,9 +236,18 @@ public class BookingService {
     }
 
     public List<String> getOccupiedSeats(Flight flight) {
-        return bookingRepository.findByFlight(flight).stream()
-                .map(Booking::getSeatNumber)
-                .filter(seat -> seat != null && !seat.trim().isEmpty())
-                .toList();
+        return seatInventoryService.getOccupiedSeats(flight);
+    }
+
+    // Все места салона самолета рейса (1A, 1B, ...)
+    public List<String> getAllSeats(Flight flight) {
+        return seatInventoryService.getAllSeats(flight);
+    }
+
+    private String normalizeSeat(String seatNumber) {
+        if (seatNumber == null || seatNumber.trim().isEmpty()) {
+            return null;
+        }
+        return seatNumber.trim();
     }
 }
\ No newline at end of file
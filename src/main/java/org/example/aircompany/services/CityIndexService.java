@@ -0,0 +1,195 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.events.FlightChangedEvent;
+import org.example.aircompany.events.FlightSnapshot;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.repositories.FlightRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Префиксный индекс городов в памяти.
+ * Переводит частичный ввод пользователя ("моск", "петер") в набор нормализованных ключей городов,
+ * по которым FlightSearchService ищет рейсы через индекс БД.
+ * Строится из таблицы flights при первом обращении, дальше обновляется по событиям FlightChangedEvent.
+ */
+@Service
+public class CityIndexService {
+
+    private final FlightRepository flightRepository;
+
+    // Ключ города -> отображаемое название
+    private final ConcurrentSkipListMap<String, String> cities = new ConcurrentSkipListMap<>();
+
+    // Слово названия -> ключи городов (поиск по началу любого слова: "петер" -> "санкт-петербург")
+    private final ConcurrentSkipListMap<String, Set<String>> words = new ConcurrentSkipListMap<>();
+
+    // Ключ города -> количество ссылок на него из рейсов (город удаляется из индекса, когда ссылок не осталось)
+    private final Map<String, Integer> references = new HashMap<>();
+
+    private volatile boolean loaded;
+
+    public CityIndexService(FlightRepository flightRepository) {
+        this.flightRepository = flightRepository;
+    }
+
+    /**
+     * Ключи городов, название которых или одно из слов названия начинается с введенного текста.
+     *
+     * @param input текст, введенный пользователем
+     * @param limit максимальное количество ключей
+     */
+    public Set<String> match(String input, int limit) {
+        ensureLoaded();
+        Set<String> result = new LinkedHashSet<>();
+        String prefix = Flight.cityKey(input);
+        if (prefix == null || prefix.isEmpty()) {
+            return result;
+        }
+
+        for (String key : withPrefix(cities, prefix).keySet()) {
+            if (result.size() >= limit) {
+                return result;
+            }
+            result.add(key);
+        }
+        for (Set<String> keys : withPrefix(words, prefix).values()) {
+            for (String key : keys) {
+                if (result.size() >= limit) {
+                    return result;
+                }
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Подсказки для поля ввода города: отображаемые названия в порядке match, без повторов.
+     * Отвечает из памяти, без обращения к БД.
+     */
+    public List<String> suggest(String input, int limit) {
+        List<String> result = new ArrayList<>();
+        for (String key : match(input, limit)) {
+            String name = cities.get(key);
+            if (name != null) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * То же правило сопоставления, что и в match, для одного города:
+     * название или одно из его слов начинается с prefix (оба аргумента — нормализованные ключи).
+     */
+    public static boolean matches(String prefix, String cityKey) {
+        if (cityKey == null) {
+            return false;
+        }
+        if (cityKey.startsWith(prefix)) {
+            return true;
+        }
+        for (String word : wordsOf(cityKey)) {
+            if (word.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFlightChanged(FlightChangedEvent event) {
+        synchronized (this) {
+            if (!loaded) {
+                // Индекс еще не построен — при построении он прочитает актуальное состояние из БД
+                return;
+            }
+            if (event.before() != null) {
+                remove(event.before());
+            }
+            if (event.after() != null) {
+                add(event.after().departureCity(), 1);
+                add(event.after().arrivalCity(), 1);
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            for (Object[] row : flightRepository.countFlightsByDepartureCity()) {
+                add((String) row[0], ((Number) row[1]).intValue());
+            }
+            for (Object[] row : flightRepository.countFlightsByArrivalCity()) {
+                add((String) row[0], ((Number) row[1]).intValue());
+            }
+            loaded = true;
+        }
+    }
+
+    private void remove(FlightSnapshot flight) {
+        add(flight.departureCity(), -1);
+        add(flight.arrivalCity(), -1);
+    }
+
+    // Вызывается под блокировкой this
+    private void add(String city, int delta) {
+        String key = Flight.cityKey(city);
+        if (key == null || key.isEmpty()) {
+            return;
+        }
+        int count = references.getOrDefault(key, 0) + delta;
+        if (count > 0) {
+            references.put(key, count);
+            if (cities.putIfAbsent(key, city.trim()) == null) {
+                for (String word : wordsOf(key)) {
+                    words.computeIfAbsent(word, w -> ConcurrentHashMap.newKeySet()).add(key);
+                }
+            }
+        } else {
+            references.remove(key);
+            if (cities.remove(key) != null) {
+                for (String word : wordsOf(key)) {
+                    Set<String> keys = words.get(word);
+                    if (keys != null) {
+                        keys.remove(key);
+                        if (keys.isEmpty()) {
+                            words.remove(word);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Слова названия, кроме первого (по первому слову ищет сам индекс cities)
+    private static String[] wordsOf(String key) {
+        String[] parts = key.split("[ \\-]+");
+        if (parts.length <= 1) {
+            return new String[0];
+        }
+        String[] rest = new String[parts.length - 1];
+        System.arraycopy(parts, 1, rest, 0, rest.length);
+        return rest;
+    }
+
+    private static <V> NavigableMap<String, V> withPrefix(ConcurrentSkipListMap<String, V> map, String prefix) {
+        return map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.dto.Itinerary;
+import org.example.aircompany.events.FlightChangedEvent;
+import org.example.aircompany.events.FlightSnapshot;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.repositories.FlightRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Поиск маршрутов с одной и двумя пересадками.
+ * Работает по графу маршрутов в памяти (RouteGraph), который строится из запланированных рейсов
+ * при первом обращении и дальше обновляется по событиям FlightChangedEvent.
+ */
+@Service
+public class ConnectionSearchService {
+
+    public static final int DEFAULT_MIN_LAYOVER_MINUTES = 45;
+    public static final int DEFAULT_MAX_LAYOVER_MINUTES = 6 * 60;
+
+    // Границы допустимых значений времени пересадки, которые может задать пассажир
+    private static final int MIN_LAYOVER_LIMIT_MINUTES = 20;
+    private static final int MAX_LAYOVER_LIMIT_MINUTES = 24 * 60;
+
+    private static final int MAX_RESULTS = 30;
+    private static final int MAX_CITY_MATCHES = 10;
+
+    // Как часто убирать из графа уже вылетевшие рейсы
+    private static final Duration PRUNE_INTERVAL = Duration.ofHours(1);
+
+    private final FlightRepository flightRepository;
+    private final CityIndexService cityIndexService;
+    private final RouteGraph graph = new RouteGraph();
+
+    private volatile boolean loaded;
+    private volatile LocalDateTime lastPruned = LocalDateTime.now();
+
+    public ConnectionSearchService(FlightRepository flightRepository, CityIndexService cityIndexService) {
+        this.flightRepository = flightRepository;
+        this.cityIndexService = cityIndexService;
+    }
+
+    /**
+     * @param departureCity город отправления (полностью или начало названия)
+     * @param arrivalCity   город назначения (полностью или начало названия)
+     * @param date          дата вылета первого рейса
+     * @param minLayover    минимальная пересадка в минутах (null — по умолчанию)
+     * @param maxLayover    максимальная пересадка в минутах (null — по умолчанию)
+     * @param maxStops      максимальное число пересадок (1 или 2)
+     */
+    public List<Itinerary> search(String departureCity, String arrivalCity, LocalDate date,
+                                  Integer minLayover, Integer maxLayover, int maxStops) {
+        if (departureCity == null || arrivalCity == null || date == null) {
+            return List.of();
+        }
+        Set<String> origins = cityIndexService.match(departureCity, MAX_CITY_MATCHES);
+        Set<String> destinations = cityIndexService.match(arrivalCity, MAX_CITY_MATCHES);
+        if (origins.isEmpty() || destinations.isEmpty()) {
+            return List.of();
+        }
+
+        int min = clamp(minLayover != null ? minLayover : DEFAULT_MIN_LAYOVER_MINUTES);
+        int max = Math.max(min, clamp(maxLayover != null ? maxLayover : DEFAULT_MAX_LAYOVER_MINUTES));
+
+        ensureLoaded();
+        pruneIfNeeded();
+
+        // Первый рейс — в течение выбранного дня, но не в прошлом
+        LocalDateTime from = date.atStartOfDay();
+        if (from.isBefore(LocalDateTime.now())) {
+            from = LocalDateTime.now();
+        }
+        LocalDateTime to = date.plusDays(1).atStartOfDay().minusNanos(1);
+
+        return graph.findConnections(origins, destinations, from, to,
+                        Duration.ofMinutes(min), Duration.ofMinutes(max),
+                        Math.max(1, Math.min(maxStops, 2)), MAX_RESULTS)
+                .stream()
+                .map(Itinerary::new)
+                .toList();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFlightChanged(FlightChangedEvent event) {
+        synchronized (this) {
+            if (!loaded) {
+                return;
+            }
+            FlightSnapshot after = event.after();
+            if (after != null && after.status() == Flight.FlightStatus.scheduled) {
+                graph.put(after);
+            } else if (event.before() != null) {
+                graph.remove(event.before().flightId());
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            flightRepository.findScheduledSnapshots(LocalDateTime.now()).forEach(graph::put);
+            loaded = true;
+        }
+    }
+
+    private void pruneIfNeeded() {
+        LocalDateTime now = LocalDateTime.now();
+        if (lastPruned.plus(PRUNE_INTERVAL).isBefore(now)) {
+            lastPruned = now;
+            graph.removeDepartedBefore(now);
+        }
+    }
+
+    private static int clamp(int minutes) {
+        return Math.max(MIN_LAYOVER_LIMIT_MINUTES, Math.min(minutes, MAX_LAYOVER_LIMIT_MINUTES));
+    }
+}
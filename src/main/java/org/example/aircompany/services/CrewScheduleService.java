@@ -0,0 +1,161 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.dto.DutyBreach;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.model.User;
+import org.example.aircompany.repositories.FlightRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Расписание пилотов: для каждого пилота — дерево интервалов по времени его рейсов (кроме отмененных),
+ * индекс по пилотам в FlightScheduleIndex.
+ *
+ * Пилота можно назначить на рейс, если ни один другой его рейс не пересекается по времени
+ * с новым с учетом минимального перерыва aircompany.crew.min-turnaround-minutes между прилетом и следующим вылетом.
+ *
+ * Те же деревья — журнал налета пилота: в узлах хранится суммарная длина рейсов поддерева,
+ * поэтому налет в любом окне считается за O(log n). Назначение отклоняется, если налет пилота
+ * в каком-либо скользящем окне 24 часа, 7 или 28 дней превысил бы лимит aircompany.crew.duty.*.
+ *
+ * Списки свободных пилотов для формы рейса строятся по индексу в памяти, без запросов.
+ * Проверки при сохранении (findConflict, findDutyBreach) идут по БД: FlightService.saveFlight вызывает их
+ * под блокировкой строки пилота, а индекс может не знать о рейсах, только что сохраненных на другом узле.
+ */
+@Service
+public class CrewScheduleService {
+
+    // Окна учета налета; самое длинное не больше горизонта FlightScheduleIndex
+    private static final Duration DUTY_WINDOW_DAY = Duration.ofHours(24);
+    private static final Duration DUTY_WINDOW_WEEK = Duration.ofDays(7);
+    private static final Duration DUTY_WINDOW_MONTH = Duration.ofDays(28);
+
+    private final FlightRepository flightRepository;
+    private final FlightScheduleIndex scheduleIndex;
+    private final long turnaroundMinutes;
+    private final List<DutyLimit> dutyLimits;
+
+    public CrewScheduleService(FlightRepository flightRepository,
+                               FlightScheduleIndex scheduleIndex,
+                               @Value("${aircompany.crew.min-turnaround-minutes:60}") long turnaroundMinutes,
+                               @Value("${aircompany.crew.duty.max-minutes-24h:480}") long maxMinutesDay,
+                               @Value("${aircompany.crew.duty.max-minutes-7d:3600}") long maxMinutesWeek,
+                               @Value("${aircompany.crew.duty.max-minutes-28d:6000}") long maxMinutesMonth) {
+        this.flightRepository = flightRepository;
+        this.scheduleIndex = scheduleIndex;
+        this.turnaroundMinutes = turnaroundMinutes;
+        this.dutyLimits = List.of(
+                new DutyLimit(DUTY_WINDOW_DAY.toMinutes(), maxMinutesDay),
+                new DutyLimit(DUTY_WINDOW_WEEK.toMinutes(), maxMinutesWeek),
+                new DutyLimit(DUTY_WINDOW_MONTH.toMinutes(), maxMinutesMonth));
+    }
+
+    /**
+     * Рейс пилота, с которым пересекается рейс [departure, arrival) с учетом перерыва;
+     * null — пилот свободен. Сам рейс excludeFlightId (при редактировании) не учитывается. Один запрос к БД.
+     */
+    public Long findConflict(Long pilotId, LocalDateTime departure, LocalDateTime arrival, Long excludeFlightId) {
+        if (pilotId == null || departure == null || arrival == null || !departure.isBefore(arrival)) {
+            return null;
+        }
+        return flightRepository.findOverlappingPilotFlightIds(pilotId, departure.minusMinutes(turnaroundMinutes),
+                        arrival.plusMinutes(turnaroundMinutes), excludeFlightId).stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Лимит налета, который превысил бы рейс [departure, arrival) пилота; null — лимиты соблюдены.
+     * Сам рейс excludeFlightId (при редактировании) не учитывается. Рейсы пилота в пределах самого длинного окна
+     * вокруг нового рейса читаются одним запросом к БД в отдельный индекс.
+     */
+    public DutyBreach findDutyBreach(Long pilotId, LocalDateTime departure, LocalDateTime arrival, Long excludeFlightId) {
+        if (pilotId == null || departure == null || arrival == null || !departure.isBefore(arrival)) {
+            return null;
+        }
+        ScheduleIndex index = new ScheduleIndex();
+        for (Object[] row : flightRepository.findPilotFlightTimes(pilotId,
+                departure.minus(DUTY_WINDOW_MONTH), arrival.plus(DUTY_WINDOW_MONTH))) {
+            index.add(pilotId, (Long) row[0], (LocalDateTime) row[1], (LocalDateTime) row[2]);
+        }
+        return dutyBreach(index, pilotId, ScheduleIndex.minutes(departure), ScheduleIndex.minutes(arrival),
+                excludeFlightId);
+    }
+
+    /**
+     * Пилоты из списка, которых можно назначить на рейс: свободные на его время и без превышения
+     * лимитов налета. Если время рейса еще не задано или рейс лежит до горизонта индекса — все
+     * (проверка выполнится при сохранении). Одна блокировка на весь список.
+     */
+    public List<User> availablePilots(List<User> pilots, Flight flight) {
+        LocalDateTime departure = flight.getDepartureTime();
+        LocalDateTime arrival = flight.getArrivalTime();
+        if (departure == null || arrival == null || !departure.isBefore(arrival) || !indexed(departure)) {
+            return pilots;
+        }
+        boolean checkDuty = dutyIndexed(departure);
+        long from = ScheduleIndex.minutes(departure);
+        long to = ScheduleIndex.minutes(arrival);
+        return scheduleIndex.read(FlightScheduleIndex.Owner.PILOT, index -> pilots.stream()
+                .filter(pilot -> index.findOverlap(pilot.getUserId(), departure, arrival, turnaroundMinutes,
+                        flight.getFlightId()) == null)
+                .filter(pilot -> !checkDuty || dutyBreach(index, pilot.getUserId(), from, to, flight.getFlightId()) == null)
+                .toList());
+    }
+
+    public long getTurnaroundMinutes() {
+        return turnaroundMinutes;
+    }
+
+    /**
+     * Налет в скользящем окне — кусочно-линейная функция конца окна; максимумы достигаются, когда окно
+     * заканчивается прилетом какого-либо рейса или начинается его вылетом. Новый рейс меняет только окна,
+     * которые его задевают, поэтому проверяются окна, заканчивающиеся прилетом и начинающиеся вылетом
+     * нового рейса и соседних рейсов пилота в пределах окна: O(k log n), k — рейсов пилота в окне.
+     */
+    private DutyBreach dutyBreach(ScheduleIndex index, Long pilotId, long departure, long arrival, Long excludeFlightId) {
+        for (DutyLimit limit : dutyLimits) {
+            long window = limit.windowMinutes();
+            long[] worst = {Math.max(
+                    dutyInWindow(index, pilotId, arrival - window, arrival, departure, arrival, excludeFlightId),
+                    dutyInWindow(index, pilotId, departure, departure + window, departure, arrival, excludeFlightId))};
+            index.forEachStartingIn(pilotId, departure - window, arrival + window, excludeFlightId, (id, start, end) -> {
+                if (end > departure && end <= arrival + window) {
+                    worst[0] = Math.max(worst[0],
+                            dutyInWindow(index, pilotId, end - window, end, departure, arrival, excludeFlightId));
+                }
+                if (start + window > departure && start + window <= arrival + window) {
+                    worst[0] = Math.max(worst[0],
+                            dutyInWindow(index, pilotId, start, start + window, departure, arrival, excludeFlightId));
+                }
+            });
+            if (worst[0] > limit.maxMinutes()) {
+                return new DutyBreach((int) (window / 60), limit.maxMinutes(), worst[0]);
+            }
+        }
+        return null;
+    }
+
+    // Налет пилота в окне [from, to) вместе с новым рейсом [departure, arrival)
+    private static long dutyInWindow(ScheduleIndex index, Long pilotId, long from, long to,
+                                     long departure, long arrival, Long excludeFlightId) {
+        return index.busyMinutes(pilotId, from, to, excludeFlightId) + ScheduleIndex.overlap(departure, arrival, from, to);
+    }
+
+    // Все рейсы, которые могут попасть в окна налета вокруг вылета departure, есть в индексе
+    private boolean dutyIndexed(LocalDateTime departure) {
+        return FlightScheduleIndex.covers(departure.minus(DUTY_WINDOW_MONTH));
+    }
+
+    // Все рейсы, которые могут пересечься с вылетом departure (с учетом перерыва), есть в индексе
+    private boolean indexed(LocalDateTime departure) {
+        return FlightScheduleIndex.covers(departure.minusMinutes(turnaroundMinutes));
+    }
+
+    private record DutyLimit(long windowMinutes, long maxMinutes) {
+    }
+}
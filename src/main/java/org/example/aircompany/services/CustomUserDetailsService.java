@@ -1,36 +1,191 @@
 package org.example.aircompany.services;
 
+import org.example.aircompany.config.AuthenticatedUser;
+import org.example.aircompany.events.TokensRevokedEvent;
+import org.example.aircompany.events.UserChangedEvent;
 import org.example.aircompany.model.User;
+import org.example.aircompany.model.UserRole;
 import org.example.aircompany.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Загрузка пользователя для Spring Security.
+ * Данные для входа (логин, хэш пароля, роль) кэшируются по имени пользователя: кэш ограничен
+ * по количеству записей (вытесняется давно не запрошенная) и по времени жизни записи.
+ * Запись сбрасывается по UserChangedEvent — при регистрации, смене роли, удалении пользователя
+ * и перехэшировании пароля, — а также по TokensRevokedEvent, когда пользователя изменили на другом узле;
+ * тогда же сбрасываются и его строки в кэше второго уровня Hibernate (EntityCacheService.evictUsers).
+ * Как UserDetailsPasswordService сохраняет пароль, перехэшированный при входе
+ * с текущей стоимостью BCrypt (см. BoundedPasswordEncoder.upgradeEncoding).
+ */
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+
+    // Кэшируются только значения: объект UserDetails Spring Security после входа стирает из него пароль
+    private record Credentials(Long userId, String username, String passwordHash, UserRole role) {
+    }
+
+    private record Entry(Credentials credentials, long expiresAt) {
+    }
 
     private final UserRepository userRepository;
+    private final EntityCacheService entityCacheService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    // LinkedHashMap в порядке доступа — самая давно запрошенная запись первая
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Увеличивается при каждом изменении пользователей; прочитанное до изменения в кэш не кладется
+    private final AtomicLong version = new AtomicLong();
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    EntityCacheService entityCacheService,
+                                    ApplicationEventPublisher eventPublisher,
+                                    @Value("${aircompany.user-details-cache.max-entries:1000}") int maxEntries,
+                                    @Value("${aircompany.user-details-cache.ttl-seconds:600}") long ttlSeconds) {
         this.userRepository = userRepository;
+        this.entityCacheService = entityCacheService;
+        this.eventPublisher = eventPublisher;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
     }
 
     // Этот метод вызывается Spring Security при попытке входа
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        // Находим пользователя в нашей БД
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("Пользователь не найден: " + username));
-
-        // Преобразуем нашего User в формат UserDetails, понятный Spring Security
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPasswordHash(),
-                Collections.singleton(new SimpleGrantedAuthority(user.getRole().name()))
+        Credentials credentials = cached(username);
+        if (credentials == null) {
+            long versionAtStart = version.get();
+            // Находим пользователя в нашей БД
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new UsernameNotFoundException("Пользователь не найден: " + username));
+            credentials = new Credentials(user.getUserId(), user.getUsername(), user.getPasswordHash(), user.getRole());
+            put(username, credentials, versionAtStart);
+        }
+
+        // Преобразуем нашего User в формат UserDetails, понятный Spring Security;
+        // id пользователя сохраняется в principal для CurrentUserArgumentResolver
+        return new AuthenticatedUser(
+                credentials.userId(),
+                credentials.username(),
+                credentials.passwordHash(),
+                Collections.singleton(new SimpleGrantedAuthority(credentials.role().name()))
         ); // Роль передается как GrantedAuthority
     }
-}
\ No newline at end of file
+
+    // Вызывается Spring Security после успешного входа, если хэш посчитан с устаревшей стоимостью
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User stored = userRepository.findByUsername(user.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("Пользователь не найден: " + user.getUsername()));
+        stored.setPasswordHash(newPassword);
+        userRepository.save(stored);
+        eventPublisher.publishEvent(new UserChangedEvent(stored.getUsername()));
+
+        return new AuthenticatedUser(stored.getUserId(), stored.getUsername(), newPassword, user.getAuthorities());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        synchronized (entries) {
+            version.incrementAndGet();
+            if (entries.remove(event.username()) != null) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    // Отзыв токенов с другого узла: имя пользователя неизвестно, записи ищутся по id
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTokensRevoked(TokensRevokedEvent event) {
+        synchronized (entries) {
+            version.incrementAndGet();
+            // Сначала кэш второго уровня: иначе следующий вход снова прочитал бы из него прежнюю роль и хэш
+            entityCacheService.evictUsers(event.userIds());
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (event.userIds().contains(iterator.next().credentials().userId())) {
+                    iterator.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", size);
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlMillis / 1000);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private Credentials cached(String username) {
+        synchronized (entries) {
+            Entry entry = entries.get(username);
+            if (entry == null || entry.expiresAt() < System.currentTimeMillis()) {
+                if (entry != null) {
+                    entries.remove(username);
+                }
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.credentials();
+        }
+    }
+
+    private void put(String username, Credentials credentials, long versionAtStart) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            // Пока шел запрос в БД, пользователь мог измениться — прочитанное могло устареть
+            if (version.get() != versionAtStart) {
+                return;
+            }
+            entries.put(username, new Entry(credentials, System.currentTimeMillis() + ttlMillis));
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.aircompany.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.aircompany.model.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Статистика и управление кэшем второго уровня Hibernate.
+ * Регионы задаются в аннотациях @Cache сущностей и в подсказках запросов;
+ * размер и время жизни каждого региона — в application.conf (Caffeine JCache).
+ * Статистику Hibernate собирает только при aircompany.cache.statistics=true (по умолчанию выключена:
+ * она ведется в каждой сессии); без нее getStats возвращает пустой результат.
+ */
+@Service
+public class EntityCacheService {
+
+    // Регионы сущностей (Aircraft, User, Passenger)
+    private static final List<String> ENTITY_REGIONS = List.of("aircraft", "users", "passengers");
+
+    // Регион кэша запроса UserRepository.findByUsername
+    private static final String USERS_BY_USERNAME = "users-by-username";
+    private static final List<String> QUERY_REGIONS = List.of(USERS_BY_USERNAME);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public EntityCacheService(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public Map<String, Map<String, Object>> getStats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        if (!statistics.isStatisticsEnabled()) {
+            return stats;
+        }
+        for (String region : ENTITY_REGIONS) {
+            stats.put(region, toMap(statistics.getDomainDataRegionStatistics(region)));
+        }
+        for (String region : QUERY_REGIONS) {
+            // Регион запроса создается при первом кэшируемом запросе
+            stats.put(region, toMap(statistics.getQueryRegionStatistics(region)));
+        }
+        return stats;
+    }
+
+    /**
+     * Сбрасывает пользователей и результаты findByUsername — после изменения пользователей на другом узле:
+     * кэш второго уровня у каждого узла свой, и сам Hibernate о таких изменениях не узнает.
+     */
+    public void evictUsers(Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            entityManagerFactory.getCache().evict(User.class, userId);
+        }
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegion(USERS_BY_USERNAME);
+    }
+
+    private static Map<String, Object> toMap(CacheRegionStatistics region) {
+        long hits = region != null ? region.getHitCount() : 0;
+        long misses = region != null ? region.getMissCount() : 0;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("puts", region != null ? region.getPutCount() : 0);
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return stats;
+    }
+}
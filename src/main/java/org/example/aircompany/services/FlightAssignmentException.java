@@ -0,0 +1,12 @@
+package org.example.aircompany.services;
+
+/**
+ * Пилота или самолет нельзя назначить на рейс: другой рейс в это время или превышен лимит налета.
+ * Бросается FlightService.saveFlight после проверки под блокировкой; сообщение показывается в форме рейса.
+ */
+public class FlightAssignmentException extends IllegalStateException {
+
+    public FlightAssignmentException(String message) {
+        super(message);
+    }
+}
@@ -1,11 +1,12 @@
 package org.example.aircompany.services;
 
+import org.example.aircompany.events.CounterChangedEvent;
 import org.example.aircompany.model.Aircraft;
 import org.example.aircompany.model.Flight;
 import org.example.aircompany.model.FlightLog;
 import org.example.aircompany.model.User;
-import org.example.aircompany.repositories.AircraftRepository;
 import org.example.aircompany.repositories.FlightLogRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
@@ -14,18 +15,25 @@ import java.util.List;
 public class FlightLogService {
 
     private final FlightLogRepository flightLogRepository;
-    private final AircraftRepository aircraftRepository;
+    private final AircraftService aircraftService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public FlightLogService(FlightLogRepository flightLogRepository,
-                           AircraftRepository aircraftRepository) {
+                           AircraftService aircraftService,
+                           ApplicationEventPublisher eventPublisher) {
         this.flightLogRepository = flightLogRepository;
-        this.aircraftRepository = aircraftRepository;
+        this.aircraftService = aircraftService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
     public FlightLog save(FlightLog log) {
         // Сохраняем журнал
+        boolean created = log.getLogId() == null;
         FlightLog savedLog = flightLogRepository.save(log);
+        if (created) {
+            eventPublisher.publishEvent(CounterChangedEvent.flightLogs(1));
+        }
         
         // Обновляем статус самолета в зависимости от результата технической проверки
         Flight flight = log.getFlight();
@@ -35,12 +43,11 @@ public class FlightLogService {
             if (log.getTechnicalCheck() != null) {
                 if (log.getTechnicalCheck() == FlightLog.TechnicalCheck.pass) {
                     // Если проверка пройдена, самолет становится active
-                    aircraft.setStatus(Aircraft.AircraftStatus.active);
+                    aircraftService.changeStatus(aircraft, Aircraft.AircraftStatus.active);
                 } else if (log.getTechnicalCheck() == FlightLog.TechnicalCheck.fail) {
                     // Если обнаружены проблемы, самолет уходит на обслуживание
-                    aircraft.setStatus(Aircraft.AircraftStatus.in_maintenance);
+                    aircraftService.changeStatus(aircraft, Aircraft.AircraftStatus.in_maintenance);
                 }
-                aircraftRepository.save(aircraft);
             }
         }
         
@@ -0,0 +1,119 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.events.FlightChangedEvent;
+import org.example.aircompany.events.FlightSnapshot;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.repositories.FlightRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * Расписание рейсов в памяти, общее для CrewScheduleService и AircraftScheduleService:
+ * два ScheduleIndex — по пилотам и по самолетам — по времени рейсов (кроме отмененных).
+ *
+ * Оба индекса строятся при первом обращении одним запросом из рейсов, прилетающих не раньше HORIZON назад,
+ * дальше обновляются по событиям FlightChangedEvent; старые рейсы периодически удаляются.
+ * Раз в aircompany.schedule.reload-minutes индексы перестраиваются из БД — так в них попадают рейсы,
+ * сохраненные на другом узле или в обход сервисов. Индекс используется для подбора свободных пилотов
+ * и самолетов; проверки при сохранении рейса идут по БД.
+ */
+@Service
+public class FlightScheduleIndex {
+
+    /**
+     * Насколько далеко в прошлое индекс хранит рейсы: самое длинное окно учета налета (28 дней) плюс сутки.
+     */
+    static final Duration HORIZON = Duration.ofDays(29);
+    private static final Duration PRUNE_INTERVAL = Duration.ofHours(1);
+
+    enum Owner {
+        PILOT, AIRCRAFT
+    }
+
+    private final FlightRepository flightRepository;
+    private final Duration reloadInterval;
+
+    // Доступ под блокировкой this
+    private ScheduleIndex pilots = new ScheduleIndex();
+    private ScheduleIndex aircraft = new ScheduleIndex();
+    private boolean loaded;
+    private LocalDateTime loadedAt;
+    private LocalDateTime lastPruned = LocalDateTime.now();
+
+    public FlightScheduleIndex(FlightRepository flightRepository,
+                               @Value("${aircompany.schedule.reload-minutes:10}") long reloadMinutes) {
+        this.flightRepository = flightRepository;
+        this.reloadInterval = Duration.ofMinutes(reloadMinutes);
+    }
+
+    /**
+     * Выполняет чтение индекса пилотов или самолетов под блокировкой; при первом обращении
+     * и по истечении reloadInterval строит индексы заново.
+     */
+    <T> T read(Owner owner, Function<ScheduleIndex, T> reader) {
+        synchronized (this) {
+            ensureLoaded();
+            pruneIfNeeded();
+            return reader.apply(owner == Owner.PILOT ? pilots : aircraft);
+        }
+    }
+
+    // Все рейсы, прилетевшие не раньше time, есть в индексе
+    static boolean covers(LocalDateTime time) {
+        return !time.isBefore(LocalDateTime.now().minus(HORIZON));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFlightChanged(FlightChangedEvent event) {
+        synchronized (this) {
+            if (!loaded) {
+                // Индекс еще не построен — при построении он прочитает актуальное состояние из БД
+                return;
+            }
+            FlightSnapshot before = event.before();
+            if (before != null) {
+                pilots.remove(before.flightId());
+                aircraft.remove(before.flightId());
+            }
+            FlightSnapshot after = event.after();
+            if (after != null) {
+                add(after);
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        LocalDateTime now = LocalDateTime.now();
+        if (loaded && loadedAt.plus(reloadInterval).isAfter(now)) {
+            return;
+        }
+        pilots = new ScheduleIndex();
+        aircraft = new ScheduleIndex();
+        flightRepository.findScheduleSnapshots(now.minus(HORIZON)).forEach(this::add);
+        loaded = true;
+        loadedAt = now;
+        lastPruned = now;
+    }
+
+    private void add(FlightSnapshot flight) {
+        if (flight.status() != Flight.FlightStatus.cancelled) {
+            pilots.add(flight.pilotId(), flight.flightId(), flight.departureTime(), flight.arrivalTime());
+            aircraft.add(flight.aircraftId(), flight.flightId(), flight.departureTime(), flight.arrivalTime());
+        }
+    }
+
+    private void pruneIfNeeded() {
+        LocalDateTime now = LocalDateTime.now();
+        if (lastPruned.plus(PRUNE_INTERVAL).isAfter(now)) {
+            return;
+        }
+        lastPruned = now;
+        pilots.removeEndedBefore(now.minus(HORIZON));
+        aircraft.removeEndedBefore(now.minus(HORIZON));
+    }
+}
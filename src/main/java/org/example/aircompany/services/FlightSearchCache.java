@@ -0,0 +1,170 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.dto.FlightSearchPage;
+import org.example.aircompany.events.FlightChangedEvent;
+import org.example.aircompany.events.FlightSnapshot;
+import org.example.aircompany.events.SeatsChangedEvent;
+import org.example.aircompany.model.Flight;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш результатов поиска рейсов.
+ * Ограничен по количеству записей (вытесняется давно не запрошенная) и по времени жизни записи.
+ * Запись сбрасывается, когда создается, изменяется или удаляется рейс, который мог в нее попасть
+ * (совпадает маршрут, дата и статус scheduled до или после изменения),
+ * а также когда на рейсе из записи меняется число свободных мест.
+ */
+@Service
+public class FlightSearchCache {
+
+    /**
+     * Нормализованный поисковый запрос.
+     * departure/arrival — ключи введенного текста (Flight.cityKey), null — город не указан.
+     */
+    public record Key(String departure, String arrival, LocalDateTime dateStart, String cursor, int pageSize) {
+    }
+
+    private record Entry(FlightSearchPage page, long expiresAt) {
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    // LinkedHashMap в порядке доступа — самая давно запрошенная запись первая
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Увеличивается при каждом изменении рейсов; результат, посчитанный до изменения, в кэш не кладется
+    private final AtomicLong version = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public FlightSearchCache(@Value("${aircompany.search-cache.max-entries:1000}") int maxEntries,
+                             @Value("${aircompany.search-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    // Версия данных на момент начала поиска — передается обратно в put
+    public long currentVersion() {
+        return version.get();
+    }
+
+    public FlightSearchPage get(Key key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (entry.expiresAt() < System.currentTimeMillis()) {
+                entries.remove(key);
+                expirations.increment();
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.page();
+        }
+    }
+
+    public void put(Key key, FlightSearchPage page, long versionAtStart) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            // Пока шел запрос в БД, рейсы изменились — результат мог устареть
+            if (version.get() != versionAtStart) {
+                return;
+            }
+            entries.put(key, new Entry(page, System.currentTimeMillis() + ttlMillis));
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFlightChanged(FlightChangedEvent event) {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.keySet().removeIf(key -> {
+                boolean affected = affects(event.before(), key) || affects(event.after(), key);
+                if (affected) {
+                    invalidations.increment();
+                }
+                return affected;
+            });
+        }
+    }
+
+    // Рейс мог как пропасть из выдачи (распродан), так и вернуться в нее (место освободилось),
+    // поэтому сбрасываются все записи, в которые он подходит по маршруту и дате
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSeatsChanged(SeatsChangedEvent event) {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.keySet().removeIf(key -> {
+                boolean affected = affects(event.flight(), key);
+                if (affected) {
+                    invalidations.increment();
+                }
+                return affected;
+            });
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", size);
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlMillis / 1000);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    // Мог ли рейс в этом состоянии попасть в результаты запроса
+    private static boolean affects(FlightSnapshot flight, Key key) {
+        if (flight == null || flight.status() != Flight.FlightStatus.scheduled) {
+            return false;
+        }
+        if (flight.departureTime() != null && flight.departureTime().isBefore(key.dateStart())) {
+            return false;
+        }
+        return (key.departure() == null || CityIndexService.matches(key.departure(), flight.departureCityKey()))
+                && (key.arrival() == null || CityIndexService.matches(key.arrival(), flight.arrivalCityKey()));
+    }
+}
@@ -0,0 +1,154 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.dto.FlightAvailability;
+import org.example.aircompany.dto.FlightSearchPage;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.repositories.FlightRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Поиск рейсов для пассажиров.
+ * Введенные города переводятся в нормализованные ключи через CityIndexService,
+ * после чего запрос идет по составному индексу (departure_city_key, arrival_city_key, status, departure_time)
+ * вместо полного сканирования с LIKE '%город%'.
+ * Результаты выдаются страницами ограниченного размера с курсором по (departureTime, flightId),
+ * каждый рейс — вместе с числом свободных мест; распроданные рейсы в выдачу не попадают.
+ * Если частичному вводу соответствует больше MAX_CITY_MATCHES городов, поиск идет по первым из них,
+ * а страница помечается citiesTruncated — страница поиска просит уточнить название.
+ */
+@Service
+public class FlightSearchService {
+
+    // Сколько городов максимум подставляем в IN (...) при частичном вводе
+    public static final int MAX_CITY_MATCHES = 50;
+
+    // Размер страницы результатов по умолчанию и верхняя граница
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 50;
+
+    private final FlightRepository flightRepository;
+    private final CityIndexService cityIndexService;
+    private final FlightSearchCache flightSearchCache;
+
+    public FlightSearchService(FlightRepository flightRepository,
+                               CityIndexService cityIndexService,
+                               FlightSearchCache flightSearchCache) {
+        this.flightRepository = flightRepository;
+        this.cityIndexService = cityIndexService;
+        this.flightSearchCache = flightSearchCache;
+    }
+
+    /**
+     * @param departureCity город отправления (полностью или начало названия), null — любой
+     * @param arrivalCity   город прибытия (полностью или начало названия), null — любой
+     * @param dateStart     рейсы с вылетом не раньше этого момента
+     * @param cursor        курсор из предыдущей страницы (null — первая страница)
+     * @param pageSize      размер страницы (ограничивается MAX_PAGE_SIZE)
+     */
+    public FlightSearchPage search(String departureCity, String arrivalCity, LocalDateTime dateStart,
+                                   String cursor, Integer pageSize) {
+        int size = pageSize == null || pageSize <= 0 ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+
+        // Одинаковые запросы отдаются из кэша, пока рейсы на этом маршруте не изменились
+        FlightSearchCache.Key key = new FlightSearchCache.Key(
+                Flight.cityKey(departureCity), Flight.cityKey(arrivalCity), dateStart, cursor, size);
+        FlightSearchPage cached = flightSearchCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long version = flightSearchCache.currentVersion();
+        FlightSearchPage page = searchInDatabase(departureCity, arrivalCity, dateStart, cursor, size);
+        flightSearchCache.put(key, page, version);
+        return page;
+    }
+
+    private FlightSearchPage searchInDatabase(String departureCity, String arrivalCity, LocalDateTime dateStart,
+                                              String cursor, int size) {
+        // На один город больше лимита — чтобы узнать, что совпадений больше, чем попадет в запрос
+        Set<String> departureKeys = departureCity != null ? cityIndexService.match(departureCity, MAX_CITY_MATCHES + 1) : null;
+        Set<String> arrivalKeys = arrivalCity != null ? cityIndexService.match(arrivalCity, MAX_CITY_MATCHES + 1) : null;
+        boolean citiesTruncated = truncate(departureKeys) | truncate(arrivalKeys);
+
+        // Город указан, но такого нет ни в одном рейсе — в БД не идем
+        if ((departureKeys != null && departureKeys.isEmpty()) || (arrivalKeys != null && arrivalKeys.isEmpty())) {
+            return FlightSearchPage.empty();
+        }
+
+        // Первая страница начинается с (dateStart, 0), следующие — сразу после последнего показанного рейса
+        LocalDateTime afterTime = dateStart;
+        Long afterId = 0L;
+        String[] position = decodeCursor(cursor);
+        if (position != null && !LocalDateTime.parse(position[0]).isBefore(dateStart)) {
+            afterTime = LocalDateTime.parse(position[0]);
+            afterId = Long.parseLong(position[1]);
+        }
+
+        // Берем на одну запись больше, чтобы узнать, есть ли следующая страница, без COUNT(*)
+        Pageable limit = PageRequest.of(0, size + 1);
+
+        int seatsPerRow = SeatMap.SEAT_LETTERS.length();
+        List<FlightAvailability> flights;
+        if (departureKeys != null && arrivalKeys != null) {
+            flights = flightRepository.searchByRoute(departureKeys, arrivalKeys, afterTime, afterId,
+                    SeatMap.DEFAULT_ROWS, seatsPerRow, limit);
+        } else if (departureKeys != null) {
+            flights = flightRepository.searchByDeparture(departureKeys, afterTime, afterId,
+                    SeatMap.DEFAULT_ROWS, seatsPerRow, limit);
+        } else if (arrivalKeys != null) {
+            flights = flightRepository.searchByArrival(arrivalKeys, afterTime, afterId,
+                    SeatMap.DEFAULT_ROWS, seatsPerRow, limit);
+        } else {
+            flights = flightRepository.searchScheduled(afterTime, afterId, SeatMap.DEFAULT_ROWS, seatsPerRow, limit);
+        }
+
+        if (flights.size() <= size) {
+            return new FlightSearchPage(flights, null, citiesTruncated);
+        }
+        List<FlightAvailability> page = flights.subList(0, size);
+        Flight last = page.get(size - 1).getFlight();
+        return new FlightSearchPage(List.copyOf(page), encodeCursor(last), citiesTruncated);
+    }
+
+    // Оставляет в наборе первые MAX_CITY_MATCHES ключей; true — если что-то отброшено
+    private static boolean truncate(Set<String> keys) {
+        if (keys == null || keys.size() <= MAX_CITY_MATCHES) {
+            return false;
+        }
+        Iterator<String> iterator = keys.iterator();
+        for (int i = 0; i < MAX_CITY_MATCHES; i++) {
+            iterator.next();
+        }
+        iterator.next();
+        iterator.remove();
+        return true;
+    }
+
+    private static String encodeCursor(Flight last) {
+        return last.getDepartureTime() + "_" + last.getFlightId();
+    }
+
+    // Некорректный курсор (например, отредактированный вручную) означает первую страницу
+    private static String[] decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String[] position = cursor.split("_", 2);
+        if (position.length != 2) {
+            return null;
+        }
+        try {
+            LocalDateTime.parse(position[0]);
+            Long.parseLong(position[1]);
+            return position;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -1,107 +1,132 @@
 package org.example.aircompany.services;
 
+import org.example.aircompany.dto.DutyBreach;
+import org.example.aircompany.dto.FlightListItem;
+import org.example.aircompany.dto.FlightSearchPage;
+import org.example.aircompany.events.FlightChangedEvent;
+import org.example.aircompany.events.FlightSnapshot;
 import org.example.aircompany.model.Aircraft;
 import org.example.aircompany.model.Flight;
 import org.example.aircompany.model.User;
 import org.example.aircompany.repositories.AircraftRepository;
-import org.example.aircompany.repositories.FlightLogRepository;
 import org.example.aircompany.repositories.FlightRepository;
+import org.example.aircompany.repositories.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class FlightService {
 
     private final FlightRepository flightRepository;
-    private final FlightLogRepository flightLogRepository;
+    private final UserRepository userRepository;
     private final AircraftRepository aircraftRepository;
+    private final CrewScheduleService crewScheduleService;
+    private final AircraftScheduleService aircraftScheduleService;
+    private final AircraftService aircraftService;
+    private final SeatInventoryService seatInventoryService;
+    private final FlightSearchService flightSearchService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public FlightService(FlightRepository flightRepository, 
-                        FlightLogRepository flightLogRepository,
-                        AircraftRepository aircraftRepository) {
+                        UserRepository userRepository,
+                        AircraftRepository aircraftRepository,
+                        CrewScheduleService crewScheduleService,
+                        AircraftScheduleService aircraftScheduleService,
+                        AircraftService aircraftService,
+                        SeatInventoryService seatInventoryService,
+                        FlightSearchService flightSearchService,
+                        ApplicationEventPublisher eventPublisher) {
         this.flightRepository = flightRepository;
-        this.flightLogRepository = flightLogRepository;
+        this.userRepository = userRepository;
         this.aircraftRepository = aircraftRepository;
+        this.crewScheduleService = crewScheduleService;
+        this.aircraftScheduleService = aircraftScheduleService;
+        this.aircraftService = aircraftService;
+        this.seatInventoryService = seatInventoryService;
+        this.flightSearchService = flightSearchService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // Снимает удаляемых пилотов с их рейсов (иначе внешний ключ flights.pilot_id не даст удалить пользователя)
+    @Transactional
+    public int unassignPilots(Collection<Long> pilotIds) {
+        List<FlightSnapshot> flights = flightRepository.findByPilotUserIdIn(pilotIds).stream()
+                .map(FlightSnapshot::of)
+                .toList();
+        if (flights.isEmpty()) {
+            return 0;
+        }
+        flightRepository.unassignPilots(pilotIds);
+        for (FlightSnapshot before : flights) {
+            eventPublisher.publishEvent(new FlightChangedEvent(before, before.withoutPilot()));
+        }
+        return flights.size();
     }
 
     public List<Flight> findAllFlights() {
         return flightRepository.findAll();
     }
 
+    // Строки для списка рейсов (без загрузки сущностей)
+    public List<FlightListItem> findFlightList() {
+        return flightRepository.findListItems();
+    }
+
     public Optional<Flight> findFlightById(Long id) {
         return flightRepository.findById(id);
     }
 
+    /**
+     * Сохраняет рейс. Назначения самолета и пилота проверяются здесь же, в транзакции сохранения, под блокировкой
+     * строк самолета и пилота (всегда в этом порядке): два одновременных назначения одного самолета или пилота
+     * выполняются по очереди, и второе видит рейс, сохраненный первым.
+     *
+     * @throws FlightAssignmentException если самолет или пилот заняты другим рейсом в это время
+     *         или превышен лимит налета пилота
+     */
     @Transactional
     public Flight saveFlight(Flight flight) {
-        // Если это обновление существующего рейса
+        // Состояние рейса до изменения — для слушателей FlightChangedEvent
+        FlightSnapshot before = null;
         if (flight.getFlightId() != null) {
-            Optional<Flight> existingFlightOpt = flightRepository.findById(flight.getFlightId());
-            if (existingFlightOpt.isPresent()) {
-                Flight existingFlight = existingFlightOpt.get();
-                
-                // Если статус рейса изменился на completed, не меняем статус самолета автоматически
-                // Статус самолета будет изменен только после создания лётного журнала пилотом
-                // Самолет остается в статусе in_flight до создания журнала
-                
-                // Если самолет изменился, нужно обработать старый и новый самолет
-                if (existingFlight.getAircraft() != null 
-                    && flight.getAircraft() != null
-                    && !existingFlight.getAircraft().getAircraftId().equals(flight.getAircraft().getAircraftId())) {
-                    // Старый самолет - если он был in_flight и больше не используется в активных рейсах
-                    Aircraft oldAircraft = existingFlight.getAircraft();
-                    updateAircraftStatusIfNeeded(oldAircraft);
-                }
-            }
-        }
-        
-        // При назначении самолета на рейс новый или обновленный
-        if (flight.getAircraft() != null) {
-            Aircraft aircraft = flight.getAircraft();
-            // Если самолет в статусе active, меняем на in_flight
-            if (aircraft.getStatus() == Aircraft.AircraftStatus.active) {
-                aircraft.setStatus(Aircraft.AircraftStatus.in_flight);
-                aircraftRepository.save(aircraft);
-            }
+            before = flightRepository.findById(flight.getFlightId()).map(FlightSnapshot::of).orElse(null);
         }
-        
-        return flightRepository.save(flight);
-    }
-    
-    private void updateAircraftStatusIfNeeded(Aircraft aircraft) {
-        // Проверяем, есть ли у этого самолета активные рейсы не completed и не cancelled
-        List<Flight> activeFlights = flightRepository.findByAircraft(aircraft).stream()
-                .filter(f -> f.getStatus() != Flight.FlightStatus.completed 
-                          && f.getStatus() != Flight.FlightStatus.cancelled)
-                .toList();
-        
-        // Если нет активных рейсов и самолет был in_flight, меняем на in_maintenance
-        if (activeFlights.isEmpty() && aircraft.getStatus() == Aircraft.AircraftStatus.in_flight) {
-            aircraft.setStatus(Aircraft.AircraftStatus.in_maintenance);
-            aircraftRepository.save(aircraft);
+
+        checkAircraftAssignment(flight);
+        checkPilotAssignment(flight);
+
+        // Занятость самолета определяет расписание (AircraftScheduleService), а не его статус:
+        // назначение на рейс статус не меняет. in_flight — только пока рейс в воздухе;
+        // после завершения рейса самолет остается in_flight до технической проверки в лётном журнале
+        if (flight.getAircraft() != null
+                && flight.getStatus() == Flight.FlightStatus.in_flight
+                && flight.getAircraft().getStatus() == Aircraft.AircraftStatus.active) {
+            aircraftService.changeStatus(flight.getAircraft(), Aircraft.AircraftStatus.in_flight);
         }
+
+        Flight saved = flightRepository.save(flight);
+        eventPublisher.publishEvent(new FlightChangedEvent(before, FlightSnapshot.of(saved)));
+        return saved;
     }
 
     @Transactional
     public void deleteFlight(Long id) {
         Optional<Flight> flightOpt = flightRepository.findById(id);
         if (flightOpt.isPresent()) {
-            Flight flight = flightOpt.get();
-            Aircraft aircraft = flight.getAircraft();
+            FlightSnapshot before = FlightSnapshot.of(flightOpt.get());
             
-            // Удаляем рейс
+            // Удаляем рейс; самолет освобождается в расписании по событию
             flightRepository.deleteById(id);
-            
-            // Обновляем статус самолета, если нужно
-            if (aircraft != null) {
-                updateAircraftStatusIfNeeded(aircraft);
-            }
+            seatInventoryService.invalidate(id);
+            eventPublisher.publishEvent(new FlightChangedEvent(before, null));
         } else {
             flightRepository.deleteById(id);
         }
@@ -112,60 +137,73 @@ public class FlightService {
     }
 
     /**
-     * Проверяет, может ли пилот быть назначен на рейс.
-     * Пилот не может быть назначен, если он уже назначен на другой незавершенный рейс.
-     * 
-     * @param pilot пилот для проверки
-     * @param currentFlightId ID текущего рейса (для исключения при обновлении), может быть null
-     * @return true, если пилот может быть назначен, false - если уже назначен на другой незавершенный рейс
+     * Возвращает список пилотов, которые могут быть назначены на рейс:
+     * свободных на время рейса с учетом перерыва и без превышения лимитов налета.
+     * Проверка по расписанию в памяти, без запросов.
+     *
+     * @param allPilots список всех пилотов для фильтрации
+     * @param flight рейс (при редактировании он сам не считается конфликтом)
+     * @return список доступных пилотов (изменяемый список)
      */
+    public List<User> getAvailablePilots(List<User> allPilots, Flight flight) {
+        return new ArrayList<>(crewScheduleService.availablePilots(allPilots, flight));
+    }
 
-    public boolean canAssignPilotToFlight(User pilot, Long currentFlightId) {
-        if (pilot == null) {
-            return true; // Если пилот не назначен, проверка не нужна
+    // Самолет свободен на время рейса с учетом времени оборота — по БД, под блокировкой самолета
+    private void checkAircraftAssignment(Flight flight) {
+        if (flight.getAircraft() == null || flight.getStatus() == Flight.FlightStatus.cancelled) {
+            return;
         }
-        
-        List<Flight> activeFlights = flightRepository.findActiveFlightsByPilot(pilot);
-        
-        // Если это обновление существующего рейса, исключаем его из проверки
-        if (currentFlightId != null) {
-            activeFlights = activeFlights.stream()
-                    .filter(f -> !f.getFlightId().equals(currentFlightId))
-                    .toList();
+        Long aircraftId = flight.getAircraft().getAircraftId();
+        aircraftRepository.findByIdForUpdate(aircraftId)
+                .orElseThrow(() -> new IllegalArgumentException("Самолет не найден"));
+
+        if (aircraftScheduleService.findConflict(aircraftId, flight.getDepartureTime(), flight.getArrivalTime(),
+                flight.getFlightId()) != null) {
+            throw new FlightAssignmentException("Самолет занят другим рейсом в это время (минимальное время оборота — "
+                    + aircraftScheduleService.getTurnaroundMinutes() + " мин.)");
         }
-        
-        return activeFlights.isEmpty();
     }
 
-    /**
-     * Возвращает список пилотов, которые могут быть назначены на рейс.
-     * Пилот может быть назначен, если он не имеет активных рейсов (не completed и не cancelled).
-     * 
-     * @param allPilots список всех пилотов для фильтрации
-     * @param currentFlightId ID текущего рейса (для исключения при обновлении), может быть null
-     * @return список доступных пилотов (изменяемый список)
-     */
+    // Пилот свободен на время рейса (с учетом перерыва) и не превысит лимиты налета — по БД, под блокировкой пилота
+    private void checkPilotAssignment(Flight flight) {
+        if (flight.getPilot() == null || flight.getStatus() == Flight.FlightStatus.cancelled) {
+            return;
+        }
+        Long pilotId = flight.getPilot().getUserId();
+        userRepository.findByIdForUpdate(pilotId)
+                .orElseThrow(() -> new IllegalArgumentException("Пилот не найден"));
+
+        if (crewScheduleService.findConflict(pilotId, flight.getDepartureTime(), flight.getArrivalTime(),
+                flight.getFlightId()) != null) {
+            throw new FlightAssignmentException("У пилота есть другой рейс в это время (минимальный перерыв между рейсами — "
+                    + crewScheduleService.getTurnaroundMinutes() + " мин.)");
+        }
+        // Лимиты налета пилота в скользящих окнах 24 часа, 7 и 28 дней
+        DutyBreach breach = crewScheduleService.findDutyBreach(pilotId, flight.getDepartureTime(),
+                flight.getArrivalTime(), flight.getFlightId());
+        if (breach != null) {
+            throw new FlightAssignmentException("Превышен лимит налета пилота: за " + breach.getWindowHours()
+                    + " ч было бы " + formatMinutes(breach.getPlannedMinutes()) + " при лимите "
+                    + formatMinutes(breach.getLimitMinutes()));
+        }
+    }
 
-    public List<User> getAvailablePilots(List<User> allPilots, Long currentFlightId) {
-        return allPilots.stream()
-                .filter(pilot -> canAssignPilotToFlight(pilot, currentFlightId))
-                .collect(Collectors.toList());
+    // Самолеты парка, которые можно назначить на рейс — одна проверка по расписанию в памяти, без запросов
+    public List<Aircraft> getAvailableAircraft(List<Aircraft> fleet, Flight flight) {
+        return new ArrayList<>(aircraftScheduleService.availableAircraft(fleet, flight));
     }
 
+    // Завершенные рейсы пилота, для которых еще нет отчетов — один запрос независимо от числа рейсов
     public List<Flight> findFlightsByPilotWithoutLogs(User pilot) {
-        // Получаем все рейсы пилота и фильтруем те, которые:
-        // Имеют статус completed
-        // Для которых еще нет отчетов
-        return flightRepository.findByPilot(pilot).stream()
-                .filter(flight -> flight.getStatus() == Flight.FlightStatus.completed)
-                .filter(flight -> !flightLogRepository.existsByFlight(flight))
-                .toList();
+        return flightRepository.findCompletedWithoutLogsByPilot(pilot.getUserId());
     }
 
-    public List<Flight> searchFlights(String departureCity, String arrivalCity, LocalDate date) {
+    public FlightSearchPage searchFlights(String departureCity, String arrivalCity, LocalDate date,
+                                          String cursor, Integer pageSize) {
 
         if (date == null) {
-            return List.of();
+            return FlightSearchPage.empty();
         }
 
         LocalDateTime dateStart = date.atStartOfDay();
@@ -178,42 +216,24 @@ public class FlightService {
                 ? arrivalCity.trim()
                 : null;
 
-        return flightRepository.searchFlights(depCity, arrCity, dateStart);
+        return flightSearchService.search(depCity, arrCity, dateStart, cursor, pageSize);
     }
     
     /**
-     * Исправляет статусы самолетов для всех завершенных рейсов.
+     * Возвращает в active самолеты, оставшиеся в статусе in_flight от прежнего правила
+     * (статус менялся при назначении на рейс): у них нет рейса в воздухе и завершенного рейса,
+     * ожидающего технической проверки в лётном журнале.
      * Вызывается при запуске приложения для синхронизации данных.
-     * Статус самолета для завершенных рейсов теперь меняется только при создании
-     * лётного журнала пилотом. Самолет остается в статусе in_flight до создания журнала.
      */
-
     @Transactional
-    public void fixAircraftStatusesForCompletedFlights() {
-        // Находим все рейсы со статусом completed
-        List<Flight> completedFlights = flightRepository.findAll().stream()
-                .filter(f -> f.getStatus() == Flight.FlightStatus.completed)
-                .toList();
-        
-        for (Flight flight : completedFlights) {
-            Aircraft aircraft = flight.getAircraft();
-            if (aircraft != null) {
-                // Проверяем, есть ли у этого самолета другие активные рейсы
-                List<Flight> activeFlights = flightRepository.findByAircraft(aircraft).stream()
-                        .filter(f -> f.getStatus() != Flight.FlightStatus.completed 
-                                  && f.getStatus() != Flight.FlightStatus.cancelled)
-                        .toList();
-                
-                // Если есть активные рейсы, самолет должен быть in_flight
-                if (!activeFlights.isEmpty() && aircraft.getStatus() != Aircraft.AircraftStatus.in_flight) {
-                    aircraft.setStatus(Aircraft.AircraftStatus.in_flight);
-                    aircraftRepository.save(aircraft);
-                }
-                
-                // Если нет активных рейсов и для завершенного рейса еще не создан журнал,
-                // самолет остается в статусе in_flight до создания журнала.
-                // Статус будет изменен при создании журнала в FlightLogService.
-            }
-        }
+    public int releaseAircraftHeldByAssignment() {
+        List<Aircraft> held = aircraftService.findHeldWithoutFlight();
+        held.forEach(aircraft -> aircraftService.changeStatus(aircraft, Aircraft.AircraftStatus.active));
+        return held.size();
+    }
+
+    // 545 -> "9 ч 5 мин"
+    private static String formatMinutes(long minutes) {
+        return minutes % 60 == 0 ? minutes / 60 + " ч" : minutes / 60 + " ч " + minutes % 60 + " мин";
     }
 }
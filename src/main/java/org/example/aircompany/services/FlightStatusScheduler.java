@@ -0,0 +1,278 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.events.FlightChangedEvent;
+import org.example.aircompany.events.FlightSnapshot;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.repositories.FlightRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Смена статусов рейсов по времени: scheduled/delayed -> in_flight в момент вылета,
+ * in_flight -> completed в момент прилета. Раньше статусы менялись только вручную в форме рейса.
+ *
+ * Предстоящие переходы лежат в очереди с приоритетом по времени. Очередь содержит только переходы
+ * ближайшего LOAD_WINDOW: она перечитывается из БД (по индексам status + время), когда окно заканчивается,
+ * а между перечитываниями пополняется событиями FlightChangedEvent. Запись в очереди — только подсказка:
+ * UPDATE повторно проверяет статус и время рейса, поэтому устаревшие записи (рейс перенесли, отменили)
+ * ничего не меняют.
+ *
+ * Каждые aircompany.flight-status.tick-ms наступившие переходы применяются пачками по
+ * aircompany.flight-status.batch-size рейсов: один UPDATE на пачку вместо сохранения каждого рейса.
+ * За один запуск (одну транзакцию) применяется не больше aircompany.flight-status.max-per-tick переходов,
+ * и столько же каждого вида читается из БД при перечитывании очереди: после простоя просроченные переходы
+ * догоняются за несколько запусков, от самых старых, а не одной транзакцией.
+ * Если транзакция запуска откатилась, очередь перечитывается из БД при следующем запуске.
+ * Самолеты рейсов, которые сейчас в воздухе, переходят в in_flight; после прилета самолет остается
+ * в in_flight до технической проверки в лётном журнале (FlightLogService).
+ * Задержка обработки (сколько переход ждал после наступления) — getStats.
+ */
+@Service
+public class FlightStatusScheduler {
+
+    // На сколько вперед очередь загружается из БД
+    private static final Duration LOAD_WINDOW = Duration.ofHours(1);
+
+    private enum Kind {
+        DEPARTURE, ARRIVAL
+    }
+
+    private record Transition(LocalDateTime at, Long flightId, Kind kind) {
+    }
+
+    private final FlightRepository flightRepository;
+    private final AircraftService aircraftService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final int maxPerTick;
+
+    // Доступ под блокировкой this
+    private final PriorityQueue<Transition> queue = new PriorityQueue<>(Comparator.comparing(Transition::at));
+    private LocalDateTime loadedUntil;
+
+    private LocalDateTime lastRunAt;
+    private long lastDepartures;
+    private long lastArrivals;
+    private long totalDepartures;
+    private long totalArrivals;
+    private long lastLagMillis;
+    private long maxLagMillis;
+    // Результат текущего запуска до фиксации
+    private long pendingDepartures;
+    private long pendingArrivals;
+
+    public FlightStatusScheduler(FlightRepository flightRepository,
+                                 AircraftService aircraftService,
+                                 ApplicationEventPublisher eventPublisher,
+                                 @Value("${aircompany.flight-status.batch-size:500}") int batchSize,
+                                 @Value("${aircompany.flight-status.max-per-tick:2000}") int maxPerTick) {
+        this.flightRepository = flightRepository;
+        this.aircraftService = aircraftService;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.maxPerTick = maxPerTick;
+    }
+
+    /**
+     * Применяет наступившие переходы (не больше maxPerTick). Статистика обновляется после фиксации;
+     * при откате загруженное окно сбрасывается, и следующий запуск перечитает очередь из БД —
+     * извлеченные из очереди переходы не теряются, даже если откатилась сама фиксация.
+     */
+    @Scheduled(fixedDelayString = "${aircompany.flight-status.tick-ms:10000}",
+            initialDelayString = "${aircompany.flight-status.tick-ms:10000}")
+    @Transactional
+    public synchronized void advance() {
+        run(transition -> true);
+    }
+
+    // То же только для переходов рейсов flightIds — остальные остаются в очереди (для тестов)
+    @Transactional
+    synchronized void advance(Collection<Long> flightIds) {
+        Set<Long> scope = Set.copyOf(flightIds);
+        run(transition -> scope.contains(transition.flightId()));
+    }
+
+    private void run(Predicate<Transition> scope) {
+        LocalDateTime now = LocalDateTime.now();
+        if (loadedUntil == null || !now.isBefore(loadedUntil)) {
+            load(now.plus(LOAD_WINDOW));
+        }
+
+        List<Transition> due = new ArrayList<>();
+        List<Transition> skipped = new ArrayList<>();
+        while (due.size() < maxPerTick && !queue.isEmpty() && !queue.peek().at().isAfter(now)) {
+            Transition transition = queue.poll();
+            (scope.test(transition) ? due : skipped).add(transition);
+        }
+        queue.addAll(skipped);
+        lastRunAt = now;
+        if (due.isEmpty()) {
+            lastDepartures = 0;
+            lastArrivals = 0;
+            lastLagMillis = 0;
+            return;
+        }
+
+        afterCompletion(due);
+        pendingDepartures = apply(ids(due, Kind.DEPARTURE), Kind.DEPARTURE, now);
+        pendingArrivals = apply(ids(due, Kind.ARRIVAL), Kind.ARRIVAL, now);
+    }
+
+    // Новые и измененные рейсы попадают в очередь, если их переход наступает в загруженном окне
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFlightChanged(FlightChangedEvent event) {
+        FlightSnapshot flight = event.after();
+        if (loadedUntil == null || flight == null || flight.status() == null) {
+            return;
+        }
+        switch (flight.status()) {
+            case scheduled, delayed -> enqueue(flight.departureTime(), flight.flightId(), Kind.DEPARTURE);
+            case in_flight -> enqueue(flight.arrivalTime(), flight.flightId(), Kind.ARRIVAL);
+            default -> {
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", queue.size());
+        stats.put("nextAt", queue.isEmpty() ? null : queue.peek().at());
+        stats.put("loadedUntil", loadedUntil);
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastDepartures", lastDepartures);
+        stats.put("lastArrivals", lastArrivals);
+        stats.put("totalDepartures", totalDepartures);
+        stats.put("totalArrivals", totalArrivals);
+        stats.put("lastLagMillis", lastLagMillis);
+        stats.put("maxLagMillis", maxLagMillis);
+        return stats;
+    }
+
+    /**
+     * Очередь перечитывается целиком: так из нее уходят устаревшие записи. Каждого вида читается
+     * не больше maxPerTick ближайших переходов; если лимит достигнут, окно заканчивается на последнем
+     * прочитанном, и остальные переходы будут прочитаны, когда очередь до него дойдет.
+     */
+    private void load(LocalDateTime until) {
+        queue.clear();
+        Pageable limit = PageRequest.of(0, maxPerTick);
+        List<Object[]> departures = flightRepository.findPendingDepartures(until, limit);
+        List<Object[]> arrivals = flightRepository.findPendingArrivals(until, limit);
+        for (Object[] row : departures) {
+            queue.add(new Transition((LocalDateTime) row[1], (Long) row[0], Kind.DEPARTURE));
+        }
+        for (Object[] row : arrivals) {
+            queue.add(new Transition((LocalDateTime) row[1], (Long) row[0], Kind.ARRIVAL));
+        }
+        loadedUntil = truncated(arrivals, truncated(departures, until));
+    }
+
+    private LocalDateTime truncated(List<Object[]> rows, LocalDateTime until) {
+        if (rows.size() < maxPerTick) {
+            return until;
+        }
+        LocalDateTime last = (LocalDateTime) rows.get(rows.size() - 1)[1];
+        return last.isBefore(until) ? last : until;
+    }
+
+    // Итог запуска — после завершения его транзакции, которая фиксируется уже после выхода из advance
+    private void afterCompletion(List<Transition> due) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                completed(due, status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    private synchronized void completed(List<Transition> due, boolean committed) {
+        if (!committed) {
+            loadedUntil = null;
+            return;
+        }
+        lastDepartures = pendingDepartures;
+        lastArrivals = pendingArrivals;
+        totalDepartures += pendingDepartures;
+        totalArrivals += pendingArrivals;
+        // Самый старый из примененных переходов
+        lastLagMillis = Duration.between(due.get(0).at(), LocalDateTime.now()).toMillis();
+        maxLagMillis = Math.max(maxLagMillis, lastLagMillis);
+    }
+
+    private void enqueue(LocalDateTime at, Long flightId, Kind kind) {
+        if (at != null && at.isBefore(loadedUntil)) {
+            queue.add(new Transition(at, flightId, kind));
+        }
+    }
+
+    private static List<Long> ids(List<Transition> due, Kind kind) {
+        return due.stream()
+                .filter(t -> t.kind() == kind)
+                .map(Transition::flightId)
+                .distinct()
+                .toList();
+    }
+
+    // Один переход для группы рейсов: снимки до, UPDATE, снимки после и события — по пачкам
+    private long apply(List<Long> flightIds, Kind kind, LocalDateTime now) {
+        long applied = 0;
+        for (int from = 0; from < flightIds.size(); from += batchSize) {
+            List<Long> batch = flightIds.subList(from, Math.min(from + batchSize, flightIds.size()));
+            Map<Long, FlightSnapshot> before = flightRepository.findSnapshotsByIds(batch).stream()
+                    .collect(Collectors.toMap(FlightSnapshot::flightId, Function.identity()));
+
+            int updated = kind == Kind.DEPARTURE
+                    ? flightRepository.markDeparted(batch, now)
+                    : flightRepository.markArrived(batch, now);
+            if (updated == 0) {
+                continue;
+            }
+
+            // Снимки после UPDATE: рейсы, которые он изменил, — те, что теперь в целевом статусе
+            Flight.FlightStatus target = kind == Kind.DEPARTURE ? Flight.FlightStatus.in_flight : Flight.FlightStatus.completed;
+            List<FlightSnapshot> changed = flightRepository.findSnapshotsByIds(batch).stream()
+                    .filter(after -> after.status() == target)
+                    .filter(after -> before.containsKey(after.flightId()) && before.get(after.flightId()).status() != target)
+                    .toList();
+
+            if (kind == Kind.DEPARTURE) {
+                // Самолет в воздухе, только если рейс еще не прилетел (догоняющий переход после простоя его не трогает)
+                Set<Long> airborne = changed.stream()
+                        .filter(after -> after.aircraftId() != null && after.arrivalTime() != null && after.arrivalTime().isAfter(now))
+                        .map(FlightSnapshot::aircraftId)
+                        .collect(Collectors.toSet());
+                aircraftService.markInFlight(airborne);
+            }
+            for (FlightSnapshot after : changed) {
+                eventPublisher.publishEvent(new FlightChangedEvent(before.get(after.flightId()), after));
+            }
+            applied += changed.size();
+        }
+        return applied;
+    }
+}
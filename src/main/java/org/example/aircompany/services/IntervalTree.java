@@ -0,0 +1,255 @@
+package org.example.aircompany.services;
+
+/**
+ * Дерево интервалов [start, end) с идентификаторами — сбалансированное (AVL) дерево поиска
+ * по началу интервала, в каждом узле хранится наибольший конец интервала в поддереве
+ * и суммарная длина интервалов поддерева.
+ * Вставка, удаление, поиск пересечения и суммарная длина до момента времени — O(log n).
+ * Используется ScheduleIndex: одно дерево на пилота или самолет, интервал — время рейса.
+ * Не потокобезопасно.
+ */
+public class IntervalTree {
+
+    private Node root;
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Высота дерева (для тестов): от нее зависит время всех операций, у AVL она не больше ~1.44 log2(n + 2)
+    int height() {
+        return height(root);
+    }
+
+    /**
+     * Добавляет интервал [start, end).
+     *
+     * @throws IllegalArgumentException если end не больше start
+     */
+    public void insert(long id, long start, long end) {
+        if (end <= start) {
+            throw new IllegalArgumentException("Конец интервала должен быть позже начала: " + start + " - " + end);
+        }
+        root = insert(root, new Node(id, start, end));
+        size++;
+    }
+
+    /**
+     * Удаляет интервал с этим id и началом.
+     *
+     * @return true, если интервал был в дереве
+     */
+    public boolean remove(long id, long start) {
+        int before = size;
+        root = remove(root, id, start);
+        return size < before;
+    }
+
+    /**
+     * Id любого интервала, пересекающегося с [from, to), кроме excludeId; -1, если таких нет.
+     * Интервалы, которые только касаются концами, не пересекаются.
+     */
+    public long findOverlap(long from, long to, long excludeId) {
+        return findOverlap(root, from, to, excludeId);
+    }
+
+    /**
+     * Суммарная длина интервалов до момента time (интервал, содержащий time, — до time).
+     * Точна для непересекающихся интервалов; пересекающиеся могут быть учтены с избытком.
+     * Длина в [from, to) — coveredBefore(to) - coveredBefore(from).
+     */
+    public long coveredBefore(long time) {
+        long covered = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.start < time) {
+                // Интервалы левого поддерева начинаются раньше и (без пересечений) заканчиваются до time
+                covered += total(node.left) + Math.min(node.end, time) - node.start;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return covered;
+    }
+
+    // Обходит интервалы с началом в [from, to) по возрастанию начала
+    public void forEachStartingIn(long from, long to, IntervalVisitor visitor) {
+        forEachStartingIn(root, from, to, visitor);
+    }
+
+    private void forEachStartingIn(Node node, long from, long to, IntervalVisitor visitor) {
+        if (node == null) {
+            return;
+        }
+        if (node.start >= from) {
+            forEachStartingIn(node.left, from, to, visitor);
+            if (node.start < to) {
+                visitor.visit(node.id, node.start, node.end);
+            }
+        }
+        if (node.start < to) {
+            forEachStartingIn(node.right, from, to, visitor);
+        }
+    }
+
+    private long findOverlap(Node node, long from, long to, long excludeId) {
+        // Ни один интервал поддерева не заканчивается позже from
+        if (node == null || node.maxEnd <= from) {
+            return -1;
+        }
+        long found = findOverlap(node.left, from, to, excludeId);
+        if (found >= 0) {
+            return found;
+        }
+        // Начала правее — еще позже; если этот узел начинается не раньше to, правое поддерево не пересекается
+        if (node.start >= to) {
+            return -1;
+        }
+        if (node.end > from && node.id != excludeId) {
+            return node.id;
+        }
+        return findOverlap(node.right, from, to, excludeId);
+    }
+
+    private Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return balance(node);
+    }
+
+    private Node remove(Node node, long id, long start) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, id, node);
+        if (cmp < 0) {
+            node.left = remove(node.left, id, start);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, id, start);
+        } else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // Узел заменяется наименьшим узлом правого поддерева
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            return balance(successor);
+        }
+        return balance(node);
+    }
+
+    private Node removeMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return balance(node);
+    }
+
+    private static int compare(long start, long id, Node node) {
+        int cmp = Long.compare(start, node.start);
+        return cmp != 0 ? cmp : Long.compare(id, node.id);
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+        node.total = total(node.left) + (node.end - node.start) + total(node.right);
+    }
+
+    private static long total(Node node) {
+        return node == null ? 0 : node.total;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static final class Node {
+        private final long id;
+        private final long start;
+        private final long end;
+        private long maxEnd;
+        // Суммарная длина интервалов поддерева
+        private long total;
+        private int height = 1;
+        private Node left;
+        private Node right;
+
+        private Node(long id, long start, long end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+            this.total = end - start;
+        }
+    }
+
+    @FunctionalInterface
+    public interface IntervalVisitor {
+        void visit(long id, long start, long end);
+    }
+}
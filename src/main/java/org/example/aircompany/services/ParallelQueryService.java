@@ -0,0 +1,141 @@
+package org.example.aircompany.services;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Параллельное выполнение независимых запросов на чтение (страница статистики, формы рейсов):
+ * время ответа — самый долгий из запросов, а не их сумма.
+ *
+ * Пул ограничен aircompany.parallel.threads, чтобы параллельные запросы одной страницы
+ * не занимали все соединения пула БД. Когда очередь заполнена, задача выполняется в вызывающем потоке.
+ * У группы запросов общий срок aircompany.parallel.timeout-ms; при ошибке или превышении срока
+ * остальные задачи группы отменяются.
+ *
+ * Каждая задача выполняется в своем потоке, значит в своей транзакции — возвращаемые сущности
+ * отсоединены, и все нужные связи должны загружаться самим запросом. Задачи не должны открывать
+ * вложенные группы: поток пула, ожидающий другой поток того же пула, может его не дождаться.
+ */
+@Service
+public class ParallelQueryService implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    public ParallelQueryService(@Value("${aircompany.parallel.threads:4}") int threads,
+                                @Value("${aircompany.parallel.queue-capacity:100}") int queueCapacity,
+                                @Value("${aircompany.parallel.timeout-ms:5000}") long timeoutMillis) {
+        AtomicInteger number = new AtomicInteger();
+        ThreadFactory threadFactory = task -> {
+            Thread thread = new Thread(task, "parallel-query-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Открывает группу запросов. Использовать в try-with-resources:
+     * <pre>
+     * try (ParallelQueryService.Scope scope = parallelQueryService.open()) {
+     *     Supplier&lt;List&lt;Aircraft&gt;&gt; aircrafts = scope.fork(aircraftService::findAllAircrafts);
+     *     Supplier&lt;List&lt;User&gt;&gt; pilots = scope.fork(userService::findPilots);
+     *     scope.join();
+     *     ...
+     * }
+     * </pre>
+     */
+    public Scope open() {
+        return new Scope(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    public final class Scope implements AutoCloseable {
+
+        private final long deadline;
+        private final List<Future<?>> futures = new ArrayList<>();
+
+        private Scope(long deadline) {
+            this.deadline = deadline;
+        }
+
+        /**
+         * Запускает запрос. Результат доступен через get() возвращенного Supplier
+         * (после join или сразу — тогда get() дождется именно этого запроса).
+         */
+        public <T> Supplier<T> fork(Callable<T> query) {
+            Future<T> future = executor.submit(query);
+            futures.add(future);
+            return () -> await(future);
+        }
+
+        // Дожидается всех запросов группы; первая ошибка отменяет остальные и пробрасывается вызывающему
+        public void join() {
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        }
+
+        // Незавершенные запросы (например, после ошибки в вызывающем коде) отменяются
+        @Override
+        public void close() {
+            cancelAll();
+        }
+
+        private <T> T await(Future<T> future) {
+            try {
+                long remaining = deadline - System.nanoTime();
+                return future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                cancelAll();
+                throw new IllegalStateException("Запросы не выполнились за " + timeoutMillis + " мс", e);
+            } catch (CancellationException e) {
+                throw new IllegalStateException("Запрос отменен: другой запрос группы завершился ошибкой", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelAll();
+                throw new IllegalStateException("Ожидание запросов прервано", e);
+            } catch (ExecutionException e) {
+                cancelAll();
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException("Ошибка выполнения запроса", cause);
+            }
+        }
+
+        private void cancelAll() {
+            for (Future<?> future : futures) {
+                if (!future.isDone()) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.dto.AircraftUtilization;
+import org.example.aircompany.dto.FlightLoad;
+import org.example.aircompany.events.FlightChangedEvent;
+import org.example.aircompany.events.FlightSnapshot;
+import org.example.aircompany.events.SeatsChangedEvent;
+import org.example.aircompany.model.AircraftDayRollup;
+import org.example.aircompany.model.FlightBookingRollup;
+import org.example.aircompany.model.RouteDayRollup;
+import org.example.aircompany.repositories.AircraftDayRollupRepository;
+import org.example.aircompany.repositories.BookingRepository;
+import org.example.aircompany.repositories.FlightBookingRollupRepository;
+import org.example.aircompany.repositories.FlightRepository;
+import org.example.aircompany.repositories.RouteDayRollupRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Сводки для аналитики: загрузка направлений по дням, использование самолетов по дням
+ * и динамика бронирований каждого рейса (таблицы route_day_rollups, aircraft_day_rollups, flight_booking_rollups).
+ *
+ * Обновляются инкрементально: события FlightChangedEvent и SeatsChangedEvent только помечают затронутые
+ * ключи (направление + день, самолет + день, рейс), а flush раз в несколько секунд пересчитывает
+ * каждую помеченную строку небольшим запросом по индексу. Пачка бронирований на один рейс — один пересчет.
+ * Компактизация по расписанию строит все сводки заново из flights и bookings — она исправляет
+ * расхождения от записей в обход сервисов и устаревшие названия (модель самолета). Она идет по частям
+ * в aircompany.rollups.compaction-chunk-days дней вылета: в памяти и в одной транзакции — только рейсы части.
+ * Страница аналитики читает только сводки.
+ *
+ * Пересчет и компактизация выполняются под блокировкой this, транзакции — внутри нее (TransactionTemplate):
+ * фиксация происходит до снятия блокировки, поэтому они не перекрываются.
+ */
+@Service
+public class RollupService {
+
+    private record RouteDay(String departureKey, String arrivalKey, LocalDate day) {
+    }
+
+    private record AircraftDay(Long aircraftId, LocalDate day) {
+    }
+
+    private final FlightRepository flightRepository;
+    private final BookingRepository bookingRepository;
+    private final RouteDayRollupRepository routeDayRollupRepository;
+    private final AircraftDayRollupRepository aircraftDayRollupRepository;
+    private final FlightBookingRollupRepository flightBookingRollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int compactionChunkDays;
+
+    // Ключи, ожидающие пересчета
+    private final Set<RouteDay> dirtyRouteDays = ConcurrentHashMap.newKeySet();
+    private final Set<AircraftDay> dirtyAircraftDays = ConcurrentHashMap.newKeySet();
+    private final Set<Long> dirtyFlights = ConcurrentHashMap.newKeySet();
+
+    private volatile LocalDateTime lastFlushAt;
+    private volatile long lastFlushRows;
+    private volatile LocalDateTime lastCompactionAt;
+    private volatile long lastCompactionMillis;
+
+    public RollupService(FlightRepository flightRepository,
+                         BookingRepository bookingRepository,
+                         RouteDayRollupRepository routeDayRollupRepository,
+                         AircraftDayRollupRepository aircraftDayRollupRepository,
+                         FlightBookingRollupRepository flightBookingRollupRepository,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${aircompany.rollups.compaction-chunk-days:31}") int compactionChunkDays) {
+        this.flightRepository = flightRepository;
+        this.bookingRepository = bookingRepository;
+        this.routeDayRollupRepository = routeDayRollupRepository;
+        this.aircraftDayRollupRepository = aircraftDayRollupRepository;
+        this.flightBookingRollupRepository = flightBookingRollupRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.compactionChunkDays = compactionChunkDays;
+    }
+
+    // ------------------ ЧТЕНИЕ СВОДОК ------------------
+
+    public List<RouteDayRollup> getRouteLoad(LocalDate from, LocalDate to) {
+        return routeDayRollupRepository
+                .findByFlightDateBetweenOrderByFlightDateAscDepartureCityAscArrivalCityAsc(from, to);
+    }
+
+    public List<AircraftUtilization> getAircraftUtilization(LocalDate from, LocalDate to) {
+        long periodMinutes = (ChronoUnit.DAYS.between(from, to) + 1) * 24 * 60;
+        List<AircraftUtilization> result = aircraftDayRollupRepository.sumByAircraft(from, to);
+        for (AircraftUtilization row : result) {
+            row.setUtilization(periodMinutes <= 0 ? 0.0 : (double) row.getBlockMinutes() / periodMinutes);
+        }
+        return result;
+    }
+
+    // День оформления -> количество бронирований по всем рейсам
+    public Map<LocalDate, Long> getBookingsByDay(LocalDate from, LocalDate to) {
+        Map<LocalDate, Long> result = new LinkedHashMap<>();
+        for (Object[] row : flightBookingRollupRepository.sumByDay(from, to)) {
+            result.put((LocalDate) row[0], ((Number) row[1]).longValue());
+        }
+        return result;
+    }
+
+    public List<FlightBookingRollup> getFlightBookings(Long flightId) {
+        return flightBookingRollupRepository.findByFlightIdOrderByBookingDay(flightId);
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("pendingRouteDays", dirtyRouteDays.size());
+        status.put("pendingAircraftDays", dirtyAircraftDays.size());
+        status.put("pendingFlights", dirtyFlights.size());
+        status.put("lastFlushAt", lastFlushAt);
+        status.put("lastFlushRows", lastFlushRows);
+        status.put("lastCompactionAt", lastCompactionAt);
+        status.put("lastCompactionMillis", lastCompactionMillis);
+        return status;
+    }
+
+    // ------------------ ИНКРЕМЕНТАЛЬНОЕ ОБНОВЛЕНИЕ ------------------
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFlightChanged(FlightChangedEvent event) {
+        markDirty(event.before());
+        markDirty(event.after());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSeatsChanged(SeatsChangedEvent event) {
+        markDirty(event.flight());
+    }
+
+    private void markDirty(FlightSnapshot flight) {
+        if (flight == null) {
+            return;
+        }
+        dirtyFlights.add(flight.flightId());
+        if (flight.departureTime() == null) {
+            return;
+        }
+        LocalDate day = flight.departureTime().toLocalDate();
+        if (flight.departureCityKey() != null && flight.arrivalCityKey() != null) {
+            dirtyRouteDays.add(new RouteDay(flight.departureCityKey(), flight.arrivalCityKey(), day));
+        }
+        if (flight.aircraftId() != null) {
+            dirtyAircraftDays.add(new AircraftDay(flight.aircraftId(), day));
+        }
+    }
+
+    /**
+     * Пересчитывает помеченные строки сводок одной транзакцией. Если пересчет или его фиксация не удались,
+     * ключи возвращаются в очередь и будут пересчитаны при следующем запуске.
+     */
+    @Scheduled(fixedDelayString = "${aircompany.rollups.flush-delay-ms:5000}")
+    public synchronized void flush() {
+        List<RouteDay> routeDays = drain(dirtyRouteDays);
+        List<AircraftDay> aircraftDays = drain(dirtyAircraftDays);
+        List<Long> flights = drain(dirtyFlights);
+        if (routeDays.isEmpty() && aircraftDays.isEmpty() && flights.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                routeDays.forEach(this::refreshRouteDay);
+                aircraftDays.forEach(this::refreshAircraftDay);
+                flights.forEach(this::refreshFlightBookings);
+            });
+        } catch (RuntimeException e) {
+            dirtyRouteDays.addAll(routeDays);
+            dirtyAircraftDays.addAll(aircraftDays);
+            dirtyFlights.addAll(flights);
+            throw e;
+        }
+        lastFlushAt = LocalDateTime.now();
+        lastFlushRows = routeDays.size() + aircraftDays.size() + flights.size();
+    }
+
+    private void refreshRouteDay(RouteDay key) {
+        List<FlightLoad> loads = flightRepository.findLoadsByRoute(key.departureKey(), key.arrivalKey(),
+                key.day().atStartOfDay(), key.day().plusDays(1).atStartOfDay());
+        RouteDayRollup rollup = routeDayRollupRepository
+                .findByDepartureCityKeyAndArrivalCityKeyAndFlightDate(key.departureKey(), key.arrivalKey(), key.day())
+                .orElse(null);
+        if (loads.isEmpty()) {
+            if (rollup != null) {
+                routeDayRollupRepository.delete(rollup);
+            }
+            return;
+        }
+        routeDayRollupRepository.save(fillRouteDay(rollup != null ? rollup : new RouteDayRollup(), loads));
+    }
+
+    private void refreshAircraftDay(AircraftDay key) {
+        List<FlightLoad> loads = flightRepository.findLoadsByAircraft(key.aircraftId(),
+                key.day().atStartOfDay(), key.day().plusDays(1).atStartOfDay());
+        AircraftDayRollup rollup = aircraftDayRollupRepository
+                .findByAircraftIdAndFlightDate(key.aircraftId(), key.day())
+                .orElse(null);
+        if (loads.isEmpty()) {
+            if (rollup != null) {
+                aircraftDayRollupRepository.delete(rollup);
+            }
+            return;
+        }
+        aircraftDayRollupRepository.save(fillAircraftDay(rollup != null ? rollup : new AircraftDayRollup(), loads));
+    }
+
+    // Строк по рейсу немного (по одной на день продаж) — проще заменить их целиком
+    private void refreshFlightBookings(Long flightId) {
+        flightBookingRollupRepository.deleteByFlightId(flightId);
+        List<FlightBookingRollup> rows = new ArrayList<>();
+        for (Object[] row : bookingRepository.countByDayForFlight(flightId)) {
+            rows.add(flightBooking(flightId, (String) row[0], (LocalDate) row[1], ((Number) row[2]).longValue()));
+        }
+        flightBookingRollupRepository.saveAll(rows);
+    }
+
+    // ------------------ КОМПАКТИЗАЦИЯ ------------------
+
+    /**
+     * Полный пересчет всех сводок из flights и bookings по частям: для каждых compactionChunkDays дней вылета
+     * отдельной транзакцией удаляются строки сводок этих дней и строятся заново запросами GROUP BY по рейсам части.
+     * Изменения, помеченные до начала пересчета, в нем уже учтены.
+     */
+    @Scheduled(cron = "${aircompany.rollups.compaction-cron:0 30 3 * * *}")
+    public synchronized void compact() {
+        long start = System.currentTimeMillis();
+        dirtyRouteDays.clear();
+        dirtyAircraftDays.clear();
+        dirtyFlights.clear();
+
+        Object[] range = flightRepository.findDepartureRange().get(0);
+        LocalDate first = range[0] != null ? ((LocalDateTime) range[0]).toLocalDate() : LocalDate.now();
+        LocalDate end = range[1] != null ? ((LocalDateTime) range[1]).toLocalDate().plusDays(1) : first;
+
+        // Строки дней без рейсов и удаленных рейсов
+        transactionTemplate.executeWithoutResult(status -> {
+            routeDayRollupRepository.deleteOutsideFlightDateRange(first, end);
+            aircraftDayRollupRepository.deleteOutsideFlightDateRange(first, end);
+            flightBookingRollupRepository.deleteOrphans();
+        });
+        for (LocalDate from = first; from.isBefore(end); from = from.plusDays(compactionChunkDays)) {
+            LocalDate to = from.plusDays(compactionChunkDays);
+            LocalDate chunkFrom = from;
+            transactionTemplate.executeWithoutResult(status -> compactChunk(chunkFrom, to.isBefore(end) ? to : end));
+        }
+
+        lastCompactionAt = LocalDateTime.now();
+        lastCompactionMillis = System.currentTimeMillis() - start;
+    }
+
+    // Первый запуск на существующей базе: сводок еще нет — строим их сразу, не дожидаясь ночи
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfEmpty() {
+        if (routeDayRollupRepository.count() == 0 && flightRepository.count() > 0) {
+            compact();
+        }
+    }
+
+    // Сводки рейсов с вылетом в дни [from, to)
+    private void compactChunk(LocalDate from, LocalDate to) {
+        LocalDateTime fromTime = from.atStartOfDay();
+        LocalDateTime toTime = to.atStartOfDay();
+        List<FlightLoad> loads = flightRepository.findLoadsBetween(fromTime, toTime);
+
+        routeDayRollupRepository.deleteByFlightDateRange(from, to);
+        Map<RouteDay, List<FlightLoad>> byRouteDay = loads.stream()
+                .filter(load -> load.getDepartureCityKey() != null && load.getArrivalCityKey() != null)
+                .collect(Collectors.groupingBy(load ->
+                        new RouteDay(load.getDepartureCityKey(), load.getArrivalCityKey(), load.getFlightDate())));
+        routeDayRollupRepository.saveAll(byRouteDay.values().stream()
+                .map(group -> fillRouteDay(new RouteDayRollup(), group))
+                .toList());
+
+        aircraftDayRollupRepository.deleteByFlightDateRange(from, to);
+        Map<AircraftDay, List<FlightLoad>> byAircraftDay = loads.stream()
+                .filter(load -> load.getAircraftId() != null)
+                .collect(Collectors.groupingBy(load -> new AircraftDay(load.getAircraftId(), load.getFlightDate())));
+        aircraftDayRollupRepository.saveAll(byAircraftDay.values().stream()
+                .map(group -> fillAircraftDay(new AircraftDayRollup(), group))
+                .toList());
+
+        flightBookingRollupRepository.deleteByFlightDepartureRange(fromTime, toTime);
+        List<FlightBookingRollup> bookings = new ArrayList<>();
+        for (Object[] row : bookingRepository.countByFlightAndDayDeparting(fromTime, toTime)) {
+            bookings.add(flightBooking((Long) row[0], (String) row[1], (LocalDate) row[2],
+                    ((Number) row[3]).longValue()));
+        }
+        flightBookingRollupRepository.saveAll(bookings);
+    }
+
+    // ------------------ ПОСТРОЕНИЕ СТРОК ------------------
+
+    private static RouteDayRollup fillRouteDay(RouteDayRollup rollup, List<FlightLoad> loads) {
+        FlightLoad first = loads.get(0);
+        rollup.setDepartureCityKey(first.getDepartureCityKey());
+        rollup.setArrivalCityKey(first.getArrivalCityKey());
+        rollup.setDepartureCity(first.getDepartureCity());
+        rollup.setArrivalCity(first.getArrivalCity());
+        rollup.setFlightDate(first.getFlightDate());
+        rollup.setFlights(loads.size());
+        rollup.setSeats(loads.stream().mapToLong(FlightLoad::getTotalSeats).sum());
+        rollup.setBookedSeats(loads.stream().mapToLong(FlightLoad::getBookedSeats).sum());
+        rollup.setUpdatedAt(LocalDateTime.now());
+        return rollup;
+    }
+
+    private static AircraftDayRollup fillAircraftDay(AircraftDayRollup rollup, List<FlightLoad> loads) {
+        FlightLoad first = loads.get(0);
+        rollup.setAircraftId(first.getAircraftId());
+        rollup.setAircraftModel(first.getAircraftModel());
+        rollup.setFlightDate(first.getFlightDate());
+        rollup.setFlights(loads.size());
+        rollup.setBlockMinutes(loads.stream().mapToLong(FlightLoad::getBlockMinutes).sum());
+        rollup.setUpdatedAt(LocalDateTime.now());
+        return rollup;
+    }
+
+    private static FlightBookingRollup flightBooking(Long flightId, String flightNumber, LocalDate day, long count) {
+        FlightBookingRollup rollup = new FlightBookingRollup();
+        rollup.setFlightId(flightId);
+        rollup.setFlightNumber(flightNumber);
+        rollup.setBookingDay(day);
+        rollup.setBookings(count);
+        rollup.setUpdatedAt(LocalDateTime.now());
+        return rollup;
+    }
+
+    private static <T> List<T> drain(Set<T> keys) {
+        List<T> drained = new ArrayList<>(keys);
+        drained.forEach(keys::remove);
+        return drained;
+    }
+}
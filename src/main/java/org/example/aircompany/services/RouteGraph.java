@@ -0,0 +1,285 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.events.FlightSnapshot;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Граф маршрутов с расписанием: вершины — города (нормализованные ключи), ребра — рейсы.
+ * Вылеты каждого города и каждой пары городов хранятся отсортированными по времени,
+ * поэтому стыковки в окне [прилет + минимальная пересадка, прилет + максимальная пересадка]
+ * находятся диапазонным запросом, а не перебором всех рейсов.
+ */
+public class RouteGraph {
+
+    // Ребро графа: рейс и ключи его городов
+    public record Leg(FlightSnapshot flight, String from, String to) {
+
+        public LocalDateTime departureTime() {
+            return flight.departureTime();
+        }
+
+        public LocalDateTime arrivalTime() {
+            return flight.arrivalTime();
+        }
+    }
+
+    private static final Comparator<Leg> BY_DEPARTURE = Comparator
+            .comparing(Leg::departureTime)
+            .thenComparing(leg -> leg.flight().flightId());
+
+    // Сначала самые ранние по прилету, при равенстве — с меньшим числом пересадок, затем по вылету
+    private static final Comparator<List<Leg>> BY_ARRIVAL = Comparator
+            .comparing(RouteGraph::arrivalOf)
+            .thenComparing(List::size)
+            .thenComparing(itinerary -> itinerary.get(0), BY_DEPARTURE)
+            .thenComparing(itinerary -> itinerary.get(1), BY_DEPARTURE);
+
+    // Город -> вылеты из него
+    private final Map<String, NavigableSet<Leg>> departures = new HashMap<>();
+
+    // Город отправления -> город прибытия -> вылеты по этому направлению
+    private final Map<String, Map<String, NavigableSet<Leg>>> routes = new HashMap<>();
+
+    private final Map<Long, Leg> legs = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Добавляет или заменяет рейс. Рейс без времени или городов в граф не попадает.
+     */
+    public void put(FlightSnapshot flight) {
+        lock.writeLock().lock();
+        try {
+            removeLeg(flight.flightId());
+            String from = flight.departureCityKey();
+            String to = flight.arrivalCityKey();
+            if (from == null || to == null || flight.departureTime() == null || flight.arrivalTime() == null) {
+                return;
+            }
+            Leg leg = new Leg(flight, from, to);
+            legs.put(flight.flightId(), leg);
+            departures.computeIfAbsent(from, k -> new TreeSet<>(BY_DEPARTURE)).add(leg);
+            routes.computeIfAbsent(from, k -> new HashMap<>())
+                    .computeIfAbsent(to, k -> new TreeSet<>(BY_DEPARTURE))
+                    .add(leg);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long flightId) {
+        lock.writeLock().lock();
+        try {
+            removeLeg(flightId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Удаляет рейсы, вылетевшие раньше указанного момента
+    public void removeDepartedBefore(LocalDateTime moment) {
+        lock.writeLock().lock();
+        try {
+            List<Long> departed = new ArrayList<>();
+            for (Leg leg : legs.values()) {
+                if (leg.departureTime().isBefore(moment)) {
+                    departed.add(leg.flight().flightId());
+                }
+            }
+            departed.forEach(this::removeLeg);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return legs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Маршруты с пересадками.
+     *
+     * @param origins         ключи городов отправления
+     * @param destinations    ключи городов назначения
+     * @param departureFrom   первый рейс вылетает не раньше
+     * @param departureTo     и не позже этого момента
+     * @param minLayover      минимальное время на пересадку
+     * @param maxLayover      максимальное время на пересадку
+     * @param maxStops        максимальное число пересадок (1 или 2)
+     * @param limit           сколько маршрутов вернуть (самые ранние по прилету)
+     * @return маршруты — списки рейсов по порядку; прямые рейсы не включаются
+     */
+    public List<List<FlightSnapshot>> findConnections(Set<String> origins, Set<String> destinations,
+                                                      LocalDateTime departureFrom, LocalDateTime departureTo,
+                                                      Duration minLayover, Duration maxLayover,
+                                                      int maxStops, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        Best best = new Best(limit);
+        lock.readLock().lock();
+        try {
+            for (String origin : origins) {
+                for (Leg first : window(departures.get(origin), departureFrom, departureTo)) {
+                    if (origins.contains(first.to()) || destinations.contains(first.to())) {
+                        // Прямой рейс или возврат в город отправления — не пересадка
+                        continue;
+                    }
+                    LocalDateTime earliest = first.arrivalTime().plus(minLayover);
+                    // Рейс, вылетающий позже худшего из найденных прилетов, прилетит еще позже
+                    LocalDateTime latest = best.cap(first.arrivalTime().plus(maxLayover));
+
+                    // Одна пересадка: сразу ищем рейсы first.to -> пункт назначения
+                    Map<String, NavigableSet<Leg>> fromStop = routes.get(first.to());
+                    if (fromStop == null) {
+                        continue;
+                    }
+                    for (String destination : destinations) {
+                        for (Leg second : window(fromStop.get(destination), earliest, latest)) {
+                            best.offer(List.of(first, second));
+                        }
+                    }
+                    if (maxStops < 2) {
+                        continue;
+                    }
+
+                    // Две пересадки: first.to -> любой другой город -> пункт назначения
+                    for (Leg second : window(departures.get(first.to()), earliest, best.cap(latest))) {
+                        if (origins.contains(second.to()) || destinations.contains(second.to())
+                                || second.to().equals(first.to())) {
+                            continue;
+                        }
+                        LocalDateTime earliestThird = second.arrivalTime().plus(minLayover);
+                        if (best.excludes(earliestThird)) {
+                            // Третий рейс вылетит не раньше earliestThird — такой маршрут в выдачу не попадет
+                            continue;
+                        }
+                        Map<String, NavigableSet<Leg>> fromSecondStop = routes.get(second.to());
+                        if (fromSecondStop == null) {
+                            continue;
+                        }
+                        LocalDateTime latestThird = best.cap(second.arrivalTime().plus(maxLayover));
+                        for (String destination : destinations) {
+                            for (Leg third : window(fromSecondStop.get(destination), earliestThird, latestThird)) {
+                                best.offer(List.of(first, second, third));
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<List<FlightSnapshot>> result = new ArrayList<>();
+        for (List<Leg> itinerary : best.sorted()) {
+            result.add(itinerary.stream().map(Leg::flight).toList());
+        }
+        return result;
+    }
+
+    /**
+     * limit лучших маршрутов: куча, на вершине которой худший из оставленных. Пока куча заполнена,
+     * его прилет — граница: маршруты и их продолжения, прилетающие позже, не рассматриваются.
+     */
+    private static final class Best {
+
+        private final int limit;
+        private final PriorityQueue<List<Leg>> heap;
+
+        Best(int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.min(limit, 64) + 1, BY_ARRIVAL.reversed());
+        }
+
+        void offer(List<Leg> itinerary) {
+            if (heap.size() < limit) {
+                heap.add(itinerary);
+            } else if (BY_ARRIVAL.compare(itinerary, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(itinerary);
+            }
+        }
+
+        // Маршрут, который прилетит не раньше time, в выдачу уже не попадет
+        boolean excludes(LocalDateTime time) {
+            return heap.size() == limit && time.isAfter(arrivalOf(heap.peek()));
+        }
+
+        // Верхняя граница вылета: не позже худшего прилета в заполненной куче
+        LocalDateTime cap(LocalDateTime time) {
+            if (heap.size() < limit) {
+                return time;
+            }
+            LocalDateTime worst = arrivalOf(heap.peek());
+            return time.isAfter(worst) ? worst : time;
+        }
+
+        List<List<Leg>> sorted() {
+            List<List<Leg>> itineraries = new ArrayList<>(heap);
+            itineraries.sort(BY_ARRIVAL);
+            return itineraries;
+        }
+    }
+
+    private static LocalDateTime arrivalOf(List<Leg> itinerary) {
+        return itinerary.get(itinerary.size() - 1).arrivalTime();
+    }
+
+    private void removeLeg(Long flightId) {
+        Leg leg = legs.remove(flightId);
+        if (leg == null) {
+            return;
+        }
+        removeFrom(departures, leg.from(), leg);
+        Map<String, NavigableSet<Leg>> byDestination = routes.get(leg.from());
+        if (byDestination != null) {
+            removeFrom(byDestination, leg.to(), leg);
+            if (byDestination.isEmpty()) {
+                routes.remove(leg.from());
+            }
+        }
+    }
+
+    private static void removeFrom(Map<String, NavigableSet<Leg>> index, String key, Leg leg) {
+        NavigableSet<Leg> set = index.get(key);
+        if (set != null) {
+            set.remove(leg);
+            if (set.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    // Вылеты из набора в интервале [from, to]
+    private static Collection<Leg> window(NavigableSet<Leg> set, LocalDateTime from, LocalDateTime to) {
+        if (set == null || from.isAfter(to)) {
+            return List.of();
+        }
+        return set.subSet(bound(from, Long.MIN_VALUE), true, bound(to, Long.MAX_VALUE), true);
+    }
+
+    // Фиктивный рейс-граница для диапазонного запроса
+    private static Leg bound(LocalDateTime time, long flightId) {
+        return new Leg(new FlightSnapshot(flightId, null, null, null, time, time, null, null, null), null, null);
+    }
+}
@@ -0,0 +1,109 @@
+package org.example.aircompany.services;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Занятость ресурсов (пилотов, самолетов) по рейсам: для каждого ресурса — дерево интервалов
+ * по времени его рейсов с точностью до минуты. Загрузку, события и блокировку выполняет FlightScheduleIndex.
+ * Не потокобезопасно.
+ */
+class ScheduleIndex {
+
+    private final Map<Long, IntervalTree> owners = new HashMap<>();
+    // id рейса -> его интервал в индексе (для удаления при изменении рейса)
+    private final Map<Long, Entry> flights = new HashMap<>();
+
+    // Заменяет прежний интервал рейса; рейс без ресурса или с некорректным временем в индекс не попадает
+    void add(Long ownerId, Long flightId, LocalDateTime departure, LocalDateTime arrival) {
+        remove(flightId);
+        if (ownerId == null || departure == null || arrival == null || !departure.isBefore(arrival)) {
+            return;
+        }
+        Entry entry = new Entry(ownerId, minutes(departure), minutes(arrival));
+        owners.computeIfAbsent(ownerId, id -> new IntervalTree()).insert(flightId, entry.start(), entry.end());
+        flights.put(flightId, entry);
+    }
+
+    void remove(Long flightId) {
+        Entry entry = flights.remove(flightId);
+        if (entry == null) {
+            return;
+        }
+        IntervalTree tree = owners.get(entry.ownerId());
+        if (tree != null) {
+            tree.remove(flightId, entry.start());
+            if (tree.isEmpty()) {
+                owners.remove(entry.ownerId());
+            }
+        }
+    }
+
+    /**
+     * Рейс ресурса, пересекающийся с [departure - gap, arrival + gap), кроме excludeFlightId; null — ресурс свободен.
+     */
+    Long findOverlap(Long ownerId, LocalDateTime departure, LocalDateTime arrival, long gapMinutes, Long excludeFlightId) {
+        IntervalTree tree = owners.get(ownerId);
+        if (tree == null) {
+            return null;
+        }
+        long conflict = tree.findOverlap(minutes(departure) - gapMinutes, minutes(arrival) + gapMinutes,
+                excludeFlightId != null ? excludeFlightId : -1);
+        return conflict >= 0 ? conflict : null;
+    }
+
+    /**
+     * Минуты рейсов ресурса внутри окна [from, to) (в минутах эпохи), без рейса excludeFlightId.
+     * Рейсы одного ресурса не пересекаются (это обеспечивает проверка назначения), поэтому ответ точен; O(log n).
+     */
+    long busyMinutes(Long ownerId, long from, long to, Long excludeFlightId) {
+        IntervalTree tree = owners.get(ownerId);
+        if (tree == null) {
+            return 0;
+        }
+        long busy = tree.coveredBefore(to) - tree.coveredBefore(from);
+        Entry excluded = excludeFlightId != null ? flights.get(excludeFlightId) : null;
+        if (excluded != null && excluded.ownerId().equals(ownerId)) {
+            busy -= overlap(excluded.start(), excluded.end(), from, to);
+        }
+        return busy;
+    }
+
+    // Рейсы ресурса с вылетом в [from, to) (в минутах эпохи), кроме excludeFlightId
+    void forEachStartingIn(Long ownerId, long from, long to, Long excludeFlightId, IntervalTree.IntervalVisitor visitor) {
+        IntervalTree tree = owners.get(ownerId);
+        if (tree == null) {
+            return;
+        }
+        long exclude = excludeFlightId != null ? excludeFlightId : -1;
+        tree.forEachStartingIn(from, to, (id, start, end) -> {
+            if (id != exclude) {
+                visitor.visit(id, start, end);
+            }
+        });
+    }
+
+    // Удаляет рейсы, прилетевшие раньше horizon
+    void removeEndedBefore(LocalDateTime horizon) {
+        long limit = minutes(horizon);
+        flights.entrySet().stream()
+                .filter(e -> e.getValue().end() < limit)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(this::remove);
+    }
+
+    // Длина пересечения [start, end) и [from, to)
+    static long overlap(long start, long end, long from, long to) {
+        return Math.max(0, Math.min(end, to) - Math.max(start, from));
+    }
+
+    static long minutes(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private record Entry(Long ownerId, long start, long end) {
+    }
+}
@@ -0,0 +1,164 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.events.FlightChangedEvent;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.repositories.BookingRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Инвентарь мест: по одной битовой карте на рейс.
+ * Карта строится из таблицы bookings при первом обращении (или если изменилась
+ * вместимость самолета), дальше свободное место бронируется без запросов к БД.
+ * Занятое по карте место перепроверяется по БД: карта этого узла могла не узнать об отмене
+ * бронирования на другом узле.
+ *
+ * Карты живут не дольше aircompany.seats.ttl-seconds (после этого перестраиваются из БД)
+ * и удаляются, когда рейс вылетел, завершен, отменен или удален.
+ */
+@Service
+public class SeatInventoryService {
+
+    private record Entry(SeatMap seatMap, long expiresAt) {
+    }
+
+    private final BookingRepository bookingRepository;
+    private final long ttlMillis;
+    private final ConcurrentMap<Long, Entry> seatMaps = new ConcurrentHashMap<>();
+
+    public SeatInventoryService(BookingRepository bookingRepository,
+                                @Value("${aircompany.seats.ttl-seconds:600}") long ttlSeconds) {
+        this.bookingRepository = bookingRepository;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    public SeatMap getSeatMap(Flight flight) {
+        int rows = rowsOf(flight);
+        while (true) {
+            Entry entry = seatMaps.computeIfAbsent(flight.getFlightId(),
+                    id -> new Entry(load(id, rows), System.currentTimeMillis() + ttlMillis));
+            if (entry.seatMap().getRows() == rows && entry.expiresAt() >= System.currentTimeMillis()) {
+                return entry.seatMap();
+            }
+            // Самолет рейса заменили, изменили его вместимость или карта устарела — перестраиваем
+            seatMaps.remove(flight.getFlightId(), entry);
+        }
+    }
+
+    /**
+     * Атомарно занимает место на рейсе. Если по карте место занято, а в БД бронирования на него нет,
+     * карта устарела: она перестраивается из БД и место занимается в новой карте.
+     *
+     * @throws IllegalStateException если такого места нет в салоне
+     * @return true, если место было свободно
+     */
+    public boolean tryReserve(Flight flight, String seatNumber) {
+        SeatMap seatMap = getSeatMap(flight);
+        int index = seatMap.indexOf(seatNumber);
+        if (index < 0) {
+            throw new IllegalStateException("Места " + seatNumber + " нет в салоне самолета");
+        }
+        if (seatMap.tryReserve(index)) {
+            return true;
+        }
+        if (bookingRepository.existsByFlightAndSeatNumber(flight, seatNumber)) {
+            return false;
+        }
+        // Бит занят, а бронирования нет: его отменили на другом узле (или место держит еще не сохраненное
+        // бронирование — тогда дубликат отклонит уникальный индекс). Одна перестройка на вызов
+        seatMaps.computeIfPresent(flight.getFlightId(), (id, entry) -> entry.seatMap() == seatMap ? null : entry);
+        return getSeatMap(flight).tryReserve(index);
+    }
+
+    public void release(Flight flight, String seatNumber) {
+        if (flight == null || seatNumber == null) {
+            return;
+        }
+        Entry entry = seatMaps.get(flight.getFlightId());
+        if (entry != null) {
+            int index = entry.seatMap().indexOf(seatNumber);
+            if (index >= 0) {
+                entry.seatMap().release(index);
+            }
+        }
+    }
+
+    public List<String> getOccupiedSeats(Flight flight) {
+        return getSeatMap(flight).occupiedSeats();
+    }
+
+    public List<String> getAllSeats(Flight flight) {
+        return getSeatMap(flight).allSeats();
+    }
+
+    // Сбрасывает карту рейса — она будет перестроена из БД при следующем обращении
+    public void invalidate(Long flightId) {
+        if (flightId != null) {
+            seatMaps.remove(flightId);
+        }
+    }
+
+    /**
+     * Сбрасывает карты рейсов после фиксации текущей транзакции. До фиксации другой поток может перестроить
+     * карту из еще не измененных данных, поэтому сброс внутри транзакции не помогает. Вне транзакции — сразу.
+     */
+    public void invalidateAfterCommit(Collection<Long> flightIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            flightIds.forEach(this::invalidate);
+            return;
+        }
+        List<Long> ids = List.copyOf(flightIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ids.forEach(SeatInventoryService.this::invalidate);
+            }
+        });
+    }
+
+    // Рейс больше не бронируется (вылетел, завершен, отменен) или удален — карта не нужна
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFlightChanged(FlightChangedEvent event) {
+        if (event.after() == null) {
+            invalidate(event.before().flightId());
+        } else if (event.after().status() != Flight.FlightStatus.scheduled
+                && event.after().status() != Flight.FlightStatus.delayed) {
+            invalidate(event.after().flightId());
+        }
+    }
+
+    // Удаляет устаревшие карты, в том числе рейсов, к которым больше не обращаются
+    @Scheduled(fixedDelayString = "${aircompany.seats.ttl-seconds:600}", timeUnit = TimeUnit.SECONDS)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        seatMaps.values().removeIf(entry -> entry.expiresAt() < now);
+    }
+
+    private SeatMap load(Long flightId, int rows) {
+        SeatMap seatMap = new SeatMap(rows);
+        for (String seatNumber : bookingRepository.findSeatNumbersByFlightId(flightId)) {
+            int index = seatMap.indexOf(seatNumber);
+            if (index >= 0) {
+                seatMap.tryReserve(index);
+            }
+        }
+        return seatMap;
+    }
+
+    private int rowsOf(Flight flight) {
+        if (flight.getAircraft() == null || flight.getAircraft().getSeatCapacity() == null) {
+            return SeatMap.DEFAULT_ROWS;
+        }
+        return flight.getAircraft().getSeatCapacity();
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.aircompany.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Битовая карта мест одного рейса.
+ * Место "12C" соответствует биту (12 - 1) * 6 + 2.
+ * Бронирование и освобождение места — атомарные compare-and-set операции,
+ * поэтому карту можно использовать из нескольких потоков без блокировок.
+ */
+public class SeatMap {
+
+    // Буквы мест в ряду (как на схеме салона)
+    public static final String SEAT_LETTERS = "ABCDEF";
+
+    // Количество рядов, если у самолета не указана вместимость
+    public static final int DEFAULT_ROWS = 30;
+
+    private final int rows;
+    private final AtomicLongArray words;
+
+    public SeatMap(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("Количество рядов не может быть отрицательным: " + rows);
+        }
+        this.rows = rows;
+        this.words = new AtomicLongArray((size() + 63) >>> 6);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    // Общее количество мест в салоне
+    public int size() {
+        return rows * SEAT_LETTERS.length();
+    }
+
+    /**
+     * Переводит номер места ("12C") в индекс бита.
+     *
+     * @return индекс бита или -1, если такого места в салоне нет
+     */
+    public int indexOf(String seatNumber) {
+        if (seatNumber == null) {
+            return -1;
+        }
+        String seat = seatNumber.trim().toUpperCase();
+        if (seat.length() < 2) {
+            return -1;
+        }
+        int letter = SEAT_LETTERS.indexOf(seat.charAt(seat.length() - 1));
+        if (letter < 0) {
+            return -1;
+        }
+        int row;
+        try {
+            row = Integer.parseInt(seat.substring(0, seat.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (row < 1 || row > rows) {
+            return -1;
+        }
+        return (row - 1) * SEAT_LETTERS.length() + letter;
+    }
+
+    public String labelOf(int index) {
+        return (index / SEAT_LETTERS.length() + 1) + String.valueOf(SEAT_LETTERS.charAt(index % SEAT_LETTERS.length()));
+    }
+
+    public boolean isOccupied(int index) {
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    public boolean isOccupied(String seatNumber) {
+        int index = indexOf(seatNumber);
+        return index >= 0 && isOccupied(index);
+    }
+
+    /**
+     * Атомарно занимает место.
+     *
+     * @return true, если место было свободно и теперь занято этим вызовом
+     */
+    public boolean tryReserve(int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long current = words.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(word, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Атомарно освобождает место.
+     *
+     * @return true, если место было занято
+     */
+    public boolean release(int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long current = words.get(word);
+            if ((current & mask) == 0) {
+                return false;
+            }
+            if (words.compareAndSet(word, current, current & ~mask)) {
+                return true;
+            }
+        }
+    }
+
+    public int occupiedCount() {
+        int count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+
+    // Номера занятых мест (обход только установленных битов)
+    public List<String> occupiedSeats() {
+        List<String> seats = new ArrayList<>();
+        for (int i = 0; i < words.length(); i++) {
+            long word = words.get(i);
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                seats.add(labelOf((i << 6) + bit));
+                word &= word - 1;
+            }
+        }
+        return seats;
+    }
+
+    // Номера всех мест салона по порядку: 1A, 1B, ... 1F, 2A, ...
+    public List<String> allSeats() {
+        List<String> seats = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            seats.add(labelOf(i));
+        }
+        return seats;
+    }
+}
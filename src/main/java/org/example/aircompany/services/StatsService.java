@@ -0,0 +1,149 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.events.CounterChangedEvent;
+import org.example.aircompany.events.FlightChangedEvent;
+import org.example.aircompany.model.Aircraft;
+import org.example.aircompany.model.UserRole;
+import org.example.aircompany.repositories.AircraftRepository;
+import org.example.aircompany.repositories.BookingRepository;
+import org.example.aircompany.repositories.FlightLogRepository;
+import org.example.aircompany.repositories.FlightRepository;
+import org.example.aircompany.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Счетчики для страницы статистики администратора.
+ * Начальные значения берутся запросами COUNT ... GROUP BY (по одному на таблицу, по индексам,
+ * выполняются параллельно через ParallelQueryService),
+ * дальше счетчики обновляются по событиям записи (CounterChangedEvent, FlightChangedEvent)
+ * без обращения к БД. Раз в resync-minutes счетчики перечитываются из БД —
+ * это исправляет расхождения от записей в обход сервисов (прямой SQL, другой узел).
+ */
+@Service
+public class StatsService {
+
+    private static final String FLIGHTS = "flights";
+
+    private final UserRepository userRepository;
+    private final AircraftRepository aircraftRepository;
+    private final FlightRepository flightRepository;
+    private final BookingRepository bookingRepository;
+    private final FlightLogRepository flightLogRepository;
+    private final ParallelQueryService parallelQueryService;
+    private final long resyncMillis;
+
+    // Доступ под блокировкой this
+    private final Map<String, Long> counters = new HashMap<>();
+    private long loadedAt;
+    private boolean loaded;
+
+    public StatsService(UserRepository userRepository,
+                        AircraftRepository aircraftRepository,
+                        FlightRepository flightRepository,
+                        BookingRepository bookingRepository,
+                        FlightLogRepository flightLogRepository,
+                        ParallelQueryService parallelQueryService,
+                        @Value("${aircompany.stats.resync-minutes:10}") long resyncMinutes) {
+        this.userRepository = userRepository;
+        this.aircraftRepository = aircraftRepository;
+        this.flightRepository = flightRepository;
+        this.bookingRepository = bookingRepository;
+        this.flightLogRepository = flightLogRepository;
+        this.parallelQueryService = parallelQueryService;
+        this.resyncMillis = resyncMinutes * 60_000;
+    }
+
+    public long countUsers() {
+        long total = 0;
+        for (UserRole role : UserRole.values()) {
+            total += countUsersByRole(role);
+        }
+        return total;
+    }
+
+    public long countUsersByRole(UserRole role) {
+        return get(CounterChangedEvent.usersWithRole(role));
+    }
+
+    public long countAircraftByStatus(Aircraft.AircraftStatus status) {
+        return get(CounterChangedEvent.aircraftWithStatus(status));
+    }
+
+    public long countFlights() {
+        return get(FLIGHTS);
+    }
+
+    public long countBookings() {
+        return get(CounterChangedEvent.BOOKINGS);
+    }
+
+    public long countFlightLogs() {
+        return get(CounterChangedEvent.FLIGHT_LOGS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onCounterChanged(CounterChangedEvent event) {
+        // Пока счетчики не загружены, изменения не нужны — загрузка прочитает актуальное состояние
+        if (loaded) {
+            counters.merge(event.counter(), event.delta(), Long::sum);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFlightChanged(FlightChangedEvent event) {
+        if (!loaded) {
+            return;
+        }
+        if (event.isCreated()) {
+            counters.merge(FLIGHTS, 1L, Long::sum);
+        } else if (event.isDeleted()) {
+            counters.merge(FLIGHTS, -1L, Long::sum);
+        }
+    }
+
+    // Сбросить счетчики: при следующем обращении они перечитаются из БД
+    public synchronized void invalidate() {
+        loaded = false;
+    }
+
+    private synchronized long get(String counter) {
+        if (!loaded || System.currentTimeMillis() - loadedAt > resyncMillis) {
+            load();
+        }
+        return Math.max(0, counters.getOrDefault(counter, 0L));
+    }
+
+    // Вызывается под блокировкой this
+    private void load() {
+        // Пять независимых запросов — параллельно, время загрузки равно самому долгому из них
+        try (ParallelQueryService.Scope scope = parallelQueryService.open()) {
+            Supplier<List<Object[]>> usersByRole = scope.fork(userRepository::countUsersByRole);
+            Supplier<List<Object[]>> aircraftByStatus = scope.fork(aircraftRepository::countAircraftByStatus);
+            Supplier<Long> flights = scope.fork(flightRepository::count);
+            Supplier<Long> bookings = scope.fork(bookingRepository::count);
+            Supplier<Long> flightLogs = scope.fork(flightLogRepository::count);
+            scope.join();
+
+            counters.clear();
+            for (Object[] row : usersByRole.get()) {
+                counters.put(CounterChangedEvent.usersWithRole((UserRole) row[0]), ((Number) row[1]).longValue());
+            }
+            for (Object[] row : aircraftByStatus.get()) {
+                counters.put(CounterChangedEvent.aircraftWithStatus((Aircraft.AircraftStatus) row[0]),
+                        ((Number) row[1]).longValue());
+            }
+            counters.put(FLIGHTS, flights.get());
+            counters.put(CounterChangedEvent.BOOKINGS, bookings.get());
+            counters.put(CounterChangedEvent.FLIGHT_LOGS, flightLogs.get());
+        }
+        loadedAt = System.currentTimeMillis();
+        loaded = true;
+    }
+}
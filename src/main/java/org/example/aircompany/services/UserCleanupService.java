@@ -0,0 +1,135 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.dto.UserDeletionResult;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Пакетное удаление пользователей администратором (тестовые и спам-аккаунты).
+ * Выполняется в фоне частями по aircompany.user-cleanup.chunk-size пользователей — каждая часть
+ * удаляется UserService.deleteUsersByIds в своей транзакции, поэтому ошибка в одной части
+ * не откатывает уже удаленные. Ход выполнения — getProgress (страница пользователей и JSON).
+ * Одновременно выполняется одно удаление.
+ */
+@Service
+public class UserCleanupService implements DisposableBean {
+
+    private final UserService userService;
+    private final int chunkSize;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "user-cleanup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Последнее запущенное удаление; доступ под блокировкой this
+    private Progress progress;
+
+    public UserCleanupService(UserService userService,
+                              @Value("${aircompany.user-cleanup.chunk-size:500}") int chunkSize) {
+        this.userService = userService;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Запускает удаление выбранных пользователей. Администратор, запустивший удаление, пропускается.
+     *
+     * @throws IllegalStateException если удаление уже выполняется или список пуст
+     */
+    public synchronized void start(Collection<Long> userIds, Long adminId) {
+        if (progress != null && progress.finishedAt == null) {
+            throw new IllegalStateException("Удаление пользователей уже выполняется");
+        }
+        List<Long> ids = userIds == null ? List.of() : userIds.stream()
+                .filter(id -> id != null && !id.equals(adminId))
+                .distinct()
+                .toList();
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("Не выбрано ни одного пользователя для удаления");
+        }
+        Progress started = new Progress(ids.size());
+        progress = started;
+        executor.submit(() -> run(ids, started));
+    }
+
+    public synchronized Map<String, Object> getProgress() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", progress != null && progress.finishedAt == null);
+        if (progress == null) {
+            return stats;
+        }
+        stats.put("total", progress.total);
+        stats.put("processed", progress.processed);
+        stats.put("deletedUsers", progress.users);
+        stats.put("deletedBookings", progress.bookings);
+        stats.put("deletedFlightLogs", progress.flightLogs);
+        stats.put("unassignedFlights", progress.unassignedFlights);
+        stats.put("failed", progress.failed);
+        stats.put("lastError", progress.lastError);
+        stats.put("startedAt", progress.startedAt);
+        stats.put("finishedAt", progress.finishedAt);
+        return stats;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private void run(List<Long> ids, Progress target) {
+        try {
+            for (int from = 0; from < ids.size(); from += chunkSize) {
+                List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+                UserDeletionResult result = null;
+                String error = null;
+                try {
+                    result = userService.deleteUsersByIds(chunk);
+                } catch (RuntimeException e) {
+                    error = e.getMessage();
+                }
+                synchronized (this) {
+                    target.processed += chunk.size();
+                    if (result != null) {
+                        target.users += result.getUsers();
+                        target.bookings += result.getBookings();
+                        target.flightLogs += result.getFlightLogs();
+                        target.unassignedFlights += result.getUnassignedFlights();
+                    } else {
+                        target.failed += chunk.size();
+                        target.lastError = error;
+                    }
+                }
+            }
+        } finally {
+            synchronized (this) {
+                target.finishedAt = LocalDateTime.now();
+            }
+        }
+    }
+
+    private static final class Progress {
+        private final int total;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private int processed;
+        private int users;
+        private int bookings;
+        private int flightLogs;
+        private int unassignedFlights;
+        private int failed;
+        private String lastError;
+        private LocalDateTime finishedAt;
+
+        private Progress(int total) {
+            this.total = total;
+        }
+    }
+}
@@ -1,17 +1,25 @@
 package org.example.aircompany.services;
 
-import org.example.aircompany.model.Booking;
+import org.example.aircompany.dto.UserDeletionResult;
+import org.example.aircompany.dto.UserListItem;
+import org.example.aircompany.events.CounterChangedEvent;
+import org.example.aircompany.events.UserChangedEvent;
 import org.example.aircompany.model.RolesHistory;
 import org.example.aircompany.model.User;
 import org.example.aircompany.model.UserRole;
+import org.example.aircompany.repositories.FlightLogRepository;
+import org.example.aircompany.repositories.PassengerRepository;
 import org.example.aircompany.repositories.RolesHistoryRepository;
 import org.example.aircompany.repositories.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import java.util.Optional;
-
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class UserService {
@@ -20,16 +28,31 @@ public class UserService {
     private final PasswordEncoder passwordEncoder;
     private final RolesHistoryRepository rolesHistoryRepository;
     private final BookingService bookingService;
+    private final FlightService flightService;
+    private final FlightLogRepository flightLogRepository;
+    private final PassengerRepository passengerRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AuthTokenService tokenService;
 
     public UserService(UserRepository userRepository,
                        PasswordEncoder passwordEncoder,
                        RolesHistoryRepository rolesHistoryRepository,
-                       BookingService bookingService) {
+                       BookingService bookingService,
+                       FlightService flightService,
+                       FlightLogRepository flightLogRepository,
+                       PassengerRepository passengerRepository,
+                       ApplicationEventPublisher eventPublisher,
+                       AuthTokenService tokenService) {
 
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.rolesHistoryRepository = rolesHistoryRepository;
         this.bookingService = bookingService;
+        this.flightService = flightService;
+        this.flightLogRepository = flightLogRepository;
+        this.passengerRepository = passengerRepository;
+        this.eventPublisher = eventPublisher;
+        this.tokenService = tokenService;
     }
 
     // Метод для регистрации нового пользователя с ролью "passenger"
@@ -44,9 +67,13 @@ public class UserService {
         user.setPasswordHash(passwordEncoder.encode(user.getPasswordHash())); // Принимаем пароль из формы
 
         userRepository.save(user);
+        eventPublisher.publishEvent(CounterChangedEvent.users(UserRole.passenger, 1));
+        eventPublisher.publishEvent(new UserChangedEvent(user.getUsername()));
         return true;
     }
 
+    // Одна транзакция: смена роли и запись в историю; кэш второго уровня обновляется при коммите
+    @Transactional
     public boolean updateUserRole(Long targetUserId, UserRole newRole, User adminUser) {
         // Находим пользователя, которому меняем роль
         User targetUser = userRepository.findById(targetUserId)
@@ -72,56 +99,74 @@ public class UserService {
 
         rolesHistoryRepository.save(history);
 
+        // Токены со старой ролью больше не принимаются
+        tokenService.revoke(targetUserId);
+
+        eventPublisher.publishEvent(CounterChangedEvent.users(oldRole, -1));
+        eventPublisher.publishEvent(CounterChangedEvent.users(newRole, 1));
+        eventPublisher.publishEvent(new UserChangedEvent(targetUser.getUsername()));
+
         return true;
     }
 
     public List<User> findAllUsers() {
         return userRepository.findAll();
     }
+    // Строки для списка пользователей в панели администратора
+    public List<UserListItem> findUserList() {
+        return userRepository.findListItems();
+    }
+
     public User findByUsername(String username) {
         return userRepository.findByUsername(username)
                 .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден: " + username));
     }
-    public long countByRole(UserRole role) {
-        return userRepository.findAll()
-                .stream()
-                .filter(u -> u.getRole() == role)
-                .count();
-    }
-
     public List<User> findPilots() {
-        return userRepository.findAll()
-                .stream()
-                .filter(u -> u.getRole() == UserRole.pilot)
-                .toList();
+        return userRepository.findByRoleOrderByUserId(UserRole.pilot);
     }
 
     public Optional<User> findById(Long id) {
         return userRepository.findById(id);
     }
 
-    public void deleteUser(User user) {
-        userRepository.delete(user);
-    }
-
     @Transactional
     public void deleteUserById(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("Пользователь с ID " + userId + " не найден"));
-
-        // Удаляем все бронирования пользователя
-        List<Booking> bookings = bookingService.findBookingsByUser(user);
-        for (Booking booking : bookings) {
-            bookingService.deleteBooking(booking.getBookingId());
+        if (deleteUsersByIds(List.of(userId)).getUsers() == 0) {
+            throw new IllegalArgumentException("Пользователь с ID " + userId + " не найден");
         }
+    }
 
-        // Удаляем все записи из истории ролей, где пользователь является target_user или admin_user
-        // Это необходимо, так как в базе данных есть ограничение внешнего ключа
-        rolesHistoryRepository.deleteByTargetUser(user);
-        rolesHistoryRepository.deleteByAdminUser(user);
+    /**
+     * Удаление группы пользователей в одной транзакции: по одному DELETE на каждую связанную таблицу
+     * (бронирования, история ролей, журналы, данные пассажиров), без загрузки записей по одной.
+     * Удаляемые пилоты снимаются со своих рейсов. Несуществующие id пропускаются.
+     */
+    @Transactional
+    public UserDeletionResult deleteUsersByIds(Collection<Long> userIds) {
+        List<UserListItem> users = userRepository.findListItemsByIds(userIds);
+        if (users.isEmpty()) {
+            return new UserDeletionResult(0, 0, 0, 0);
+        }
+        List<Long> ids = users.stream().map(UserListItem::getUserId).toList();
+
+        int bookings = bookingService.deleteBookingsByUsers(ids);
+        int unassignedFlights = flightService.unassignPilots(ids);
+        rolesHistoryRepository.deleteByUserIds(ids);
+        int flightLogs = flightLogRepository.deleteByPilotIds(ids);
+        passengerRepository.deleteByUserIds(ids);
+        int deleted = userRepository.deleteByIds(ids);
+        tokenService.revokeAll(ids);
+
+        Map<UserRole, Long> byRole = users.stream()
+                .collect(Collectors.groupingBy(UserListItem::getRole, Collectors.counting()));
+        byRole.forEach((role, count) -> eventPublisher.publishEvent(CounterChangedEvent.users(role, -count)));
+        if (flightLogs > 0) {
+            eventPublisher.publishEvent(CounterChangedEvent.flightLogs(-flightLogs));
+        }
+        for (UserListItem user : users) {
+            eventPublisher.publishEvent(new UserChangedEvent(user.getUsername()));
+        }
 
-        // Удаляем пользователя
-        // Passenger и FlightLog удалятся автоматически благодаря cascade = CascadeType.ALL
-        userRepository.delete(user);
+        return new UserDeletionResult(deleted, bookings, flightLogs, unassignedFlights);
     }
-}
\ No newline at end of file
+}
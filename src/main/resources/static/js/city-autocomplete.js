@@ -0,0 +1,52 @@
+(() => {
+  // Подсказки городов для полей с атрибутом data-city-autocomplete;
+  // значение атрибута — адрес подсказок с учетом контекста приложения (шаблон задает его через @{/search/cities})
+  const DELAY_MS = 150;
+
+  const attach = (input) => {
+    const url = input.dataset.cityAutocomplete;
+    const list = document.createElement("datalist");
+    list.id = `${input.id}-suggestions`;
+    input.setAttribute("list", list.id);
+    input.setAttribute("autocomplete", "off");
+    input.after(list);
+
+    let timer = null;
+    let lastPrefix = null;
+
+    input.addEventListener("input", () => {
+      clearTimeout(timer);
+      timer = setTimeout(() => {
+        const prefix = input.value.trim();
+        if (prefix === lastPrefix) {
+          return;
+        }
+        lastPrefix = prefix;
+        if (prefix === "") {
+          list.innerHTML = "";
+          return;
+        }
+
+        fetch(`${url}?prefix=${encodeURIComponent(prefix)}`)
+          .then((response) => response.json())
+          .then((cities) => {
+            // Ответ на устаревший ввод не показываем
+            if (prefix !== lastPrefix) {
+              return;
+            }
+            list.innerHTML = "";
+            cities.forEach((city) => {
+              const option = document.createElement("option");
+              option.value = city;
+              list.appendChild(option);
+            });
+          })
+          .catch((error) => console.error("Ошибка при загрузке городов:", error));
+      }, DELAY_MS);
+    });
+  };
+
+  document.addEventListener("DOMContentLoaded", () => {
+    document.querySelectorAll("input[data-city-autocomplete]").forEach(attach);
+  });
+})();
@@ -0,0 +1,90 @@
+package org.example.aircompany.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Пул хэширования паролей: проверка паролей, повышение стоимости и отказ при перегрузке.
+ * Контекст Spring не нужен. Итоги всплеска публикуются через TestReporter.
+ */
+class BoundedPasswordEncoderTests {
+
+    @Test
+    void upgradesWeakerHashes() {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(6, 2, 10, 5_000);
+        try {
+            String weak = new BCryptPasswordEncoder(4).encode("secret");
+            assertTrue(encoder.matches("secret", weak));
+            assertFalse(encoder.matches("wrong", weak));
+            assertTrue(encoder.upgradeEncoding(weak), "Хэш с меньшей стоимостью должен пересчитываться");
+
+            String current = encoder.encode("secret");
+            assertTrue(encoder.matches("secret", current));
+            assertFalse(encoder.upgradeEncoding(current));
+        } finally {
+            encoder.destroy();
+        }
+    }
+
+    @Test
+    void burstIsRejectedInsteadOfQueued(TestReporter reporter) throws Exception {
+        // Один поток, очередь на один хэш: из всплеска входов часть сразу получает отказ
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(12, 1, 1, 10_000);
+        String hash = new BCryptPasswordEncoder(12).encode("secret");
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger overloaded = new AtomicInteger();
+        try {
+            List<Future<?>> logins = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                logins.add(clients.submit(() -> {
+                    try {
+                        if (encoder.matches("secret", hash)) {
+                            accepted.incrementAndGet();
+                        }
+                    } catch (AuthenticationServiceException e) {
+                        overloaded.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> login : logins) {
+                login.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            clients.shutdownNow();
+            encoder.destroy();
+        }
+
+        reporter.publishEntry("всплеск из 8 входов", "принято " + accepted.get() + ", отклонено " + overloaded.get());
+        assertEquals(8, accepted.get() + overloaded.get(), "Каждый вход должен быть принят или отклонен");
+        assertTrue(overloaded.get() > 0, "При заполненной очереди вход должен отклоняться сразу, а не ждать");
+        assertEquals((long) overloaded.get(), encoder.getStats().get("rejected"));
+    }
+
+    @Test
+    void slowHashingRejectsRegistration() {
+        // Хэш стоимости 12 не успевает за 1 мс — регистрация получает отдельное исключение, а не любое IllegalStateException
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(12, 1, 1, 1);
+        try {
+            assertThrows(PasswordHashingRejectedException.class, () -> encoder.encode("secret"));
+            assertEquals(1L, encoder.getStats().get("timeouts"));
+        } finally {
+            encoder.destroy();
+        }
+    }
+}
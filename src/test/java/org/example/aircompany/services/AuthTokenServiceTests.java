@@ -0,0 +1,210 @@
+package org.example.aircompany.services;
+
+import jakarta.servlet.http.Cookie;
+import org.example.aircompany.config.AuthenticatedUser;
+import org.example.aircompany.model.User;
+import org.example.aircompany.model.UserRole;
+import org.example.aircompany.repositories.TokenRevocationRepository;
+import org.example.aircompany.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Токены входа без сессии: подпись, срок действия, обновление и отзыв.
+ * Узлы — отдельные экземпляры AuthTokenService с общим секретом поверх общей БД.
+ */
+@SpringBootTest
+class AuthTokenServiceTests {
+
+    private static final String SECRET = "test-secret-0123456789abcdefghijk";
+
+    @Autowired
+    private TokenRevocationRepository revocationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("token_" + Long.toString(System.nanoTime(), 36));
+        user.setPasswordHash("-");
+        user.setRole(UserRole.passenger);
+        user = userRepository.save(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM token_revocations WHERE user_id = ?", user.getUserId());
+        userRepository.deleteById(user.getUserId());
+    }
+
+    @Test
+    void signedTokenAuthenticatesUser() {
+        AuthTokenService node = node(SECRET, 300, 86400);
+        Cookie[] cookies = login(node);
+
+        AuthenticatedUser principal = authenticate(node, cookies).orElseThrow();
+
+        assertEquals(user.getUserId(), principal.getUserId());
+        assertEquals(user.getUsername(), principal.getUsername());
+        assertEquals(Set.of(new SimpleGrantedAuthority("passenger")), Set.copyOf(principal.getAuthorities()));
+    }
+
+    @Test
+    void forgedTokensAreRejectedAndCleared() {
+        Cookie[] foreign = login(node("other-secret-0123456789abcdefghij", 300, 86400));
+        Cookie[] tampered = login(node(SECRET, 300, 86400));
+        for (Cookie cookie : tampered) {
+            // Меняется первый символ подписи (последний может нести только биты выравнивания base64)
+            String value = cookie.getValue();
+            int signature = value.indexOf('.') + 1;
+            char replacement = value.charAt(signature) == 'A' ? 'B' : 'A';
+            cookie.setValue(value.substring(0, signature) + replacement + value.substring(signature + 1));
+        }
+
+        AuthTokenService node = node(SECRET, 300, 86400);
+        assertFalse(authenticate(node, foreign).isPresent(), "Токен, подписанный другим ключом, принят");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertFalse(node.authenticate(request(tampered), response).isPresent(), "Токен с испорченной подписью принят");
+        assertTrue(response.getHeaders(HttpHeaders.SET_COOKIE).stream().allMatch(header -> header.contains("Max-Age=0")),
+                "Недействительные cookie должны удаляться: " + response.getHeaders(HttpHeaders.SET_COOKIE));
+    }
+
+    @Test
+    void expiredAccessTokenIsRenewedWithCurrentRole() {
+        // Токен доступа истекает сразу — вход по токену обновления
+        AuthTokenService node = node(SECRET, 0, 86400);
+        Cookie[] cookies = login(node);
+        user.setRole(UserRole.pilot);
+        userRepository.save(user);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AuthenticatedUser principal = node.authenticate(request(cookies), response).orElseThrow();
+
+        assertEquals(Set.of(new SimpleGrantedAuthority("pilot")), Set.copyOf(principal.getAuthorities()));
+        assertTrue(response.getHeaders(HttpHeaders.SET_COOKIE).stream()
+                        .anyMatch(header -> header.startsWith(AuthTokenService.ACCESS_COOKIE + "=") && !header.contains("Max-Age=0")),
+                "Должен быть выдан новый токен доступа: " + response.getHeaders(HttpHeaders.SET_COOKIE));
+    }
+
+    @Test
+    void expiredRefreshTokenIsRejected() {
+        AuthTokenService node = node(SECRET, 0, 0);
+        Cookie[] cookies = login(node);
+
+        assertFalse(authenticate(node, cookies).isPresent());
+    }
+
+    @Test
+    void revocationAppliesLocallyAtOnceAndOnOtherNodesAfterSync() {
+        AuthTokenService local = node(SECRET, 300, 86400);
+        AuthTokenService remote = node(SECRET, 300, 86400);
+        Cookie[] cookies = login(local);
+        assertTrue(authenticate(remote, cookies).isPresent());
+
+        transactionTemplate.executeWithoutResult(status -> local.revoke(user.getUserId()));
+
+        assertFalse(authenticate(local, cookies).isPresent(), "Отозванный токен принят узлом, который его отозвал");
+        transactionTemplate.executeWithoutResult(status -> remote.syncRevocations());
+        assertFalse(authenticate(remote, cookies).isPresent(), "Отозванный токен принят другим узлом после опроса");
+    }
+
+    @Test
+    void logoutRevokesTokens() {
+        AuthTokenService node = node(SECRET, 300, 86400);
+        Cookie[] cookies = login(node);
+
+        transactionTemplate.executeWithoutResult(status -> node.logout(request(cookies)));
+
+        assertFalse(authenticate(node, cookies).isPresent(), "Токен, скопированный до выхода, принят");
+    }
+
+    @Test
+    void revocationFromOtherNodeEvictsCachedUserDetails() {
+        AuthTokenService local = node(SECRET, 300, 86400);
+        AuthTokenService remote = node(SECRET, 300, 86400);
+        assertEquals(Set.of(new SimpleGrantedAuthority("passenger")),
+                Set.copyOf(userDetailsService.loadUserByUsername(user.getUsername()).getAuthorities()));
+
+        // Роль сменили на другом узле: SQL в обход Hibernate — кэш второго уровня этого узла о нем не знает,
+        // кэши узнают об изменении только из таблицы отзывов
+        jdbcTemplate.update("UPDATE users SET role = 'pilot' WHERE user_id = ?", user.getUserId());
+        transactionTemplate.executeWithoutResult(status -> local.revoke(user.getUserId()));
+        transactionTemplate.executeWithoutResult(status -> remote.syncRevocations());
+
+        assertEquals(Set.of(new SimpleGrantedAuthority("pilot")),
+                Set.copyOf(userDetailsService.loadUserByUsername(user.getUsername()).getAuthorities()));
+        assertEquals(UserRole.pilot, userRepository.findById(user.getUserId()).orElseThrow().getRole());
+    }
+
+    @Test
+    void statelessModeRequiresLongSecret() {
+        assertThrows(IllegalStateException.class, () -> node("", 300, 86400));
+        assertThrows(IllegalStateException.class, () -> node("short-secret", 300, 86400));
+    }
+
+    private AuthTokenService node(String secret, long accessTtlSeconds, long refreshTtlSeconds) {
+        return new AuthTokenService(revocationRepository, userRepository, eventPublisher,
+                true, secret, accessTtlSeconds, refreshTtlSeconds, false);
+    }
+
+    // Вход по форме: cookie, которые получит браузер
+    private Cookie[] login(AuthTokenService node) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        node.issue(new AuthenticatedUser(user.getUserId(), user.getUsername(), "",
+                List.of(new SimpleGrantedAuthority(user.getRole().name()))), response);
+        List<Cookie> cookies = new ArrayList<>();
+        for (String header : response.getHeaders(HttpHeaders.SET_COOKIE)) {
+            String pair = header.substring(0, header.indexOf(';'));
+            int eq = pair.indexOf('=');
+            cookies.add(new Cookie(pair.substring(0, eq), pair.substring(eq + 1)));
+        }
+        return cookies.toArray(new Cookie[0]);
+    }
+
+    private Optional<AuthenticatedUser> authenticate(AuthTokenService node, Cookie[] cookies) {
+        return node.authenticate(request(cookies), new MockHttpServletResponse());
+    }
+
+    private static MockHttpServletRequest request(Cookie[] cookies) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(cookies);
+        return request;
+    }
+}
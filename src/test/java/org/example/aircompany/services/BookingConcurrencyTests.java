@@ -0,0 +1,179 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.model.Aircraft;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.model.User;
+import org.example.aircompany.model.UserRole;
+import org.example.aircompany.repositories.AircraftRepository;
+import org.example.aircompany.repositories.BookingRepository;
+import org.example.aircompany.repositories.FlightRepository;
+import org.example.aircompany.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Нагрузочный тест бронирования мест: сотни потоков одновременно бронируют места на одном рейсе.
+ * Итоги и пропускная способность публикуются через TestReporter.
+ */
+@SpringBootTest
+class BookingConcurrencyTests {
+
+    private static final int THREADS = 300;
+
+    // 10 рядов по 6 мест — на каждое место претендуют 5 потоков
+    private static final int ROWS = 10;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private FlightRepository flightRepository;
+
+    @Autowired
+    private AircraftRepository aircraftRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Aircraft aircraft;
+    private Flight flight;
+    private final List<User> passengers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        String suffix = Long.toString(System.nanoTime(), 36);
+
+        aircraft = new Aircraft();
+        aircraft.setModel("Stress test");
+        aircraft.setSeatCapacity(ROWS);
+        aircraft.setStatus(Aircraft.AircraftStatus.active);
+        aircraft = aircraftRepository.save(aircraft);
+
+        flight = new Flight();
+        flight.setFlightNumber("ST" + suffix.substring(Math.max(0, suffix.length() - 8)));
+        flight.setDepartureCity("Москва");
+        flight.setArrivalCity("Казань");
+        flight.setDepartureTime(LocalDateTime.now().plusDays(1));
+        flight.setArrivalTime(LocalDateTime.now().plusDays(1).plusHours(2));
+        flight.setStatus(Flight.FlightStatus.scheduled);
+        flight.setAircraft(aircraft);
+        flight = flightRepository.save(flight);
+
+        for (int i = 0; i < THREADS; i++) {
+            User passenger = new User();
+            passenger.setUsername("stress_" + suffix + "_" + i);
+            passenger.setPasswordHash("-");
+            passenger.setRole(UserRole.passenger);
+            passengers.add(passenger);
+        }
+        passengers.replaceAll(userRepository::save);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM bookings WHERE flight_id = ?", flight.getFlightId());
+        flightRepository.deleteById(flight.getFlightId());
+        aircraftRepository.deleteById(aircraft.getAircraftId());
+        userRepository.deleteAll(passengers);
+        seatInventoryService.invalidate(flight.getFlightId());
+    }
+
+    @Test
+    void concurrentBookingsNeverDoubleBookASeat(TestReporter reporter) throws Exception {
+        List<String> seats = seatInventoryService.getAllSeats(flight);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            User passenger = passengers.get(i);
+            String seat = seats.get(i % seats.size());
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    bookingService.createBookingForPassenger(passenger, flight, seat);
+                    booked.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        pool.shutdown();
+
+        Integer doubleBooked = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM (SELECT seat_number FROM bookings WHERE flight_id = ? " +
+                        "GROUP BY seat_number HAVING COUNT(*) > 1) duplicates",
+                Integer.class, flight.getFlightId());
+
+        reporter.publishEntry("всплеск бронирований", String.format("%d потоков, %d мест: %d успешно, %d отклонено " +
+                        "за %d мс (%.0f бронирований/с, %.0f попыток/с)",
+                THREADS, seats.size(), booked.get(), rejected.get(), elapsedMillis,
+                booked.get() * 1000.0 / elapsedMillis, THREADS * 1000.0 / elapsedMillis));
+        assertEquals(0, doubleBooked, "Места забронированы дважды");
+        assertEquals(seats.size(), booked.get(), "Каждое место должно быть забронировано ровно одним потоком");
+        assertEquals(THREADS - seats.size(), rejected.get(), "Остальные потоки должны получить отказ");
+        assertEquals(seats.size(), bookingRepository.findSeatNumbersByFlightId(flight.getFlightId()).size(),
+                "Бронирований в БД должно быть столько же, сколько мест");
+    }
+
+    @Test
+    void databaseRejectsDuplicateSeatWhenSeatMapIsStale() {
+        bookingService.createBookingForPassenger(passengers.get(0), flight, "1A");
+
+        // Имитируем другой узел: карта мест этого процесса не знает, что место 1A занято
+        seatInventoryService.release(flight, "1A");
+
+        assertThrows(IllegalStateException.class,
+                () -> bookingService.createBookingForPassenger(passengers.get(1), flight, "1A"));
+        assertEquals(List.of("1A"), bookingRepository.findSeatNumbersByFlightId(flight.getFlightId()));
+        assertEquals(List.of("1A"), seatInventoryService.getOccupiedSeats(flight));
+    }
+
+    @Test
+    void takenSeatIsRecheckedWhenSeatMapIsStale() {
+        bookingService.createBookingForPassenger(passengers.get(0), flight, "1A");
+
+        // Имитируем другой узел: бронирование там удалено, а карта мест этого процесса считает место занятым
+        jdbcTemplate.update("DELETE FROM bookings WHERE flight_id = ?", flight.getFlightId());
+
+        bookingService.createBookingForPassenger(passengers.get(1), flight, "1A");
+        assertEquals(List.of("1A"), bookingRepository.findSeatNumbersByFlightId(flight.getFlightId()));
+        assertEquals(List.of("1A"), seatInventoryService.getOccupiedSeats(flight));
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.aircompany.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.aircompany.model.Aircraft;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.repositories.AircraftRepository;
+import org.example.aircompany.repositories.FlightRepository;
+import org.example.aircompany.sql.SqlStatementCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Смена статусов рейсов по времени. Запуски по расписанию в тестах отключены (src/test/resources/config),
+ * переходы применяются явно и только для рейсов теста — остальные рейсы общей БД не меняются.
+ */
+@SpringBootTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=org.example.aircompany.sql.SqlStatementCounter")
+class FlightStatusSchedulerTests {
+
+    private static final int FLIGHTS = 18;
+
+    @Autowired
+    private FlightStatusScheduler flightStatusScheduler;
+
+    @Autowired
+    private FlightService flightService;
+
+    @Autowired
+    private FlightRepository flightRepository;
+
+    @Autowired
+    private AircraftRepository aircraftRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Aircraft> fleet = new ArrayList<>();
+    private final List<Flight> flights = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // Очередь загружается до создания рейсов — дальше рейсы попадают в нее событиями при сохранении
+        flightStatusScheduler.advance(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        flights.forEach(flight -> flightRepository.deleteById(flight.getFlightId()));
+        fleet.forEach(aircraft -> aircraftRepository.deleteById(aircraft.getAircraftId()));
+    }
+
+    @Test
+    void departuresAppliedWithOneUpdatePerBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        // Рейсы в одно время — у каждого свой самолет
+        for (int i = 0; i < FLIGHTS; i++) {
+            flights.add(newFlight(i, newAircraft(), now.minusMinutes(30), now.plusHours(1), Flight.FlightStatus.scheduled));
+        }
+
+        SqlStatementCounter sqlStatements = SqlStatementCounter.of(entityManagerFactory);
+        sqlStatements.reset();
+        flightStatusScheduler.advance(ids());
+        int statements = sqlStatements.count();
+
+        // снимки до, UPDATE рейсов, снимки после, UPDATE самолетов
+        assertTrue(statements <= 4, "Статусы " + FLIGHTS + " рейсов должны меняться одним UPDATE на пачку, " +
+                "а не по рейсу: SQL-запросов " + statements + " (бюджет 4)");
+        for (Flight flight : flights) {
+            assertEquals(Flight.FlightStatus.in_flight, status(flight));
+        }
+        for (Aircraft aircraft : fleet) {
+            assertEquals(Aircraft.AircraftStatus.in_flight,
+                    aircraftRepository.findById(aircraft.getAircraftId()).orElseThrow().getStatus());
+        }
+    }
+
+    @Test
+    void arrivalsCompleteFlightsAndFutureTransitionsWait() {
+        LocalDateTime now = LocalDateTime.now();
+        Aircraft aircraft = newAircraft();
+        Flight landed = newFlight(0, aircraft, now.minusHours(3), now.minusHours(1), Flight.FlightStatus.in_flight);
+        Flight upcoming = newFlight(1, aircraft, now.plusMinutes(30), now.plusHours(2), Flight.FlightStatus.scheduled);
+        flights.add(landed);
+        flights.add(upcoming);
+
+        flightStatusScheduler.advance(ids());
+
+        assertEquals(Flight.FlightStatus.completed, status(landed));
+        assertEquals(Flight.FlightStatus.scheduled, status(upcoming));
+    }
+
+    private Aircraft newAircraft() {
+        Aircraft aircraft = new Aircraft();
+        aircraft.setModel("Status test");
+        aircraft.setStatus(Aircraft.AircraftStatus.active);
+        aircraft = aircraftRepository.save(aircraft);
+        fleet.add(aircraft);
+        return aircraft;
+    }
+
+    private Flight newFlight(int index, Aircraft aircraft, LocalDateTime departure, LocalDateTime arrival,
+                             Flight.FlightStatus status) {
+        String suffix = Long.toString(System.nanoTime(), 36);
+        Flight flight = new Flight();
+        flight.setFlightNumber("FS" + suffix.substring(Math.max(0, suffix.length() - 6)) + index);
+        flight.setDepartureCity("Москва");
+        flight.setArrivalCity("Казань");
+        flight.setDepartureTime(departure);
+        flight.setArrivalTime(arrival);
+        flight.setStatus(status);
+        flight.setAircraft(aircraft);
+        return flightService.saveFlight(flight);
+    }
+
+    private List<Long> ids() {
+        return flights.stream().map(Flight::getFlightId).toList();
+    }
+
+    private Flight.FlightStatus status(Flight flight) {
+        return flightRepository.findById(flight.getFlightId()).orElseThrow().getStatus();
+    }
+}
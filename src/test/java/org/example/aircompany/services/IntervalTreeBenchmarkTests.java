@@ -0,0 +1,204 @@
+package org.example.aircompany.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка занятости пилотов на расписании масштаба авиакомпании: деревья интервалов (как в CrewScheduleService)
+ * против перебора рейсов пилота. Контекст Spring не нужен — расписание синтетическое.
+ * Замеры публикуются через TestReporter (в отчете JUnit), в сообщениях проверок — только причина падения.
+ */
+class IntervalTreeBenchmarkTests {
+
+    private static final int PILOTS = 200;
+    private static final int SMALL_ROSTER = 100;
+    private static final int LARGE_ROSTER = 3_200;
+    private static final int CHECKS = 200;
+    private static final long TURNAROUND = 60;
+
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(7);
+        IntervalTree tree = new IntervalTree();
+        List<long[]> intervals = new ArrayList<>();
+        for (long id = 0; id < 3_000; id++) {
+            long start = random.nextInt(100_000);
+            long[] interval = {id, start, start + 1 + random.nextInt(500)};
+            tree.insert(interval[0], interval[1], interval[2]);
+            intervals.add(interval);
+        }
+        // Часть интервалов удаляется — проверка перестроения дерева
+        for (int i = 0; i < 1_000; i++) {
+            long[] removed = intervals.remove(random.nextInt(intervals.size()));
+            assertTrue(tree.remove(removed[0], removed[1]));
+        }
+        assertEquals(intervals.size(), tree.size());
+
+        for (int i = 0; i < 5_000; i++) {
+            long from = random.nextInt(100_000);
+            long to = from + 1 + random.nextInt(300);
+            long exclude = random.nextBoolean() ? intervals.get(random.nextInt(intervals.size()))[0] : -1;
+
+            long found = tree.findOverlap(from, to, exclude);
+            boolean expected = intervals.stream().anyMatch(iv -> iv[0] != exclude && iv[1] < to && iv[2] > from);
+            assertEquals(expected, found >= 0, "Интервал [" + from + ", " + to + ")");
+            if (found >= 0) {
+                long[] interval = intervals.stream().filter(iv -> iv[0] == found).findFirst().orElseThrow();
+                assertTrue(found != exclude && interval[1] < to && interval[2] > from);
+            }
+        }
+    }
+
+    @Test
+    void coveredTimeMatchesBruteForce() {
+        // Непересекающиеся интервалы, как рейсы одного пилота в журнале налета
+        Random random = new Random(11);
+        IntervalTree tree = new IntervalTree();
+        List<long[]> intervals = new ArrayList<>();
+        long time = 0;
+        for (long id = 0; id < 2_000; id++) {
+            long start = time + random.nextInt(600);
+            long[] interval = {id, start, start + 30 + random.nextInt(300)};
+            time = interval[2];
+            intervals.add(interval);
+        }
+        // Вставка в случайном порядке и удаление части — суммы должны пересчитываться при поворотах
+        List<long[]> shuffled = new ArrayList<>(intervals);
+        Collections.shuffle(shuffled, random);
+        shuffled.forEach(iv -> tree.insert(iv[0], iv[1], iv[2]));
+        for (int i = 0; i < 500; i++) {
+            long[] removed = intervals.remove(random.nextInt(intervals.size()));
+            assertTrue(tree.remove(removed[0], removed[1]));
+        }
+
+        for (int i = 0; i < 2_000; i++) {
+            long from = random.nextInt((int) time);
+            long to = from + random.nextInt(20_000);
+            long expected = intervals.stream()
+                    .mapToLong(iv -> Math.max(0, Math.min(iv[2], to) - Math.max(iv[1], from)))
+                    .sum();
+            assertEquals(expected, tree.coveredBefore(to) - tree.coveredBefore(from), "Окно [" + from + ", " + to + ")");
+
+            List<Long> visited = new ArrayList<>();
+            tree.forEachStartingIn(from, to, (id, start, end) -> visited.add(id));
+            List<Long> starting = intervals.stream().filter(iv -> iv[1] >= from && iv[1] < to).map(iv -> iv[0]).toList();
+            assertEquals(starting, visited);
+        }
+    }
+
+    @Test
+    void rosterAvailabilityStaysLogarithmic(TestReporter reporter) {
+        Result small = measure(SMALL_ROSTER);
+        Result large = measure(LARGE_ROSTER);
+
+        // Рейсов у пилота в 32 раза больше: перебор замедляется пропорционально, дерево — на несколько уровней.
+        // Время на общих машинах сборки нестабильно и не проверяется (только публикуется); проверяется
+        // то, от чего оно зависит: ответы совпадают с перебором (в measure), высота деревьев — логарифм числа рейсов
+        reporter.publishEntry("по " + SMALL_ROSTER + " рейсов", String.format(
+                "p50 проверки %d пилотов: дерево %.0f мкс, перебор %.0f мкс, высота дерева %d",
+                PILOTS, small.treeMicros(), small.scanMicros(), small.maxHeight()));
+        reporter.publishEntry("по " + LARGE_ROSTER + " рейсов", String.format(
+                "p50 проверки %d пилотов: дерево %.0f мкс, перебор %.0f мкс, высота дерева %d",
+                PILOTS, large.treeMicros(), large.scanMicros(), large.maxHeight()));
+        assertTrue(small.maxHeight() <= maxAvlHeight(SMALL_ROSTER),
+                "Высота дерева " + small.maxHeight() + " при " + SMALL_ROSTER + " рейсах больше границы AVL");
+        assertTrue(large.maxHeight() <= maxAvlHeight(LARGE_ROSTER),
+                "Высота дерева " + large.maxHeight() + " при " + LARGE_ROSTER + " рейсах больше границы AVL");
+        assertTrue(large.maxHeight() - small.maxHeight() <= 8,
+                "Рост расписания в 32 раза должен добавлять дереву несколько уровней, а не в 32 раза больше: " +
+                        small.maxHeight() + " -> " + large.maxHeight());
+    }
+
+    // Граница высоты AVL-дерева из n узлов: 1.44 log2(n + 2)
+    private static int maxAvlHeight(int n) {
+        return (int) Math.floor(1.4405 * Math.log(n + 2) / Math.log(2));
+    }
+
+    // p50 проверки всех пилотов (мкс) деревом и перебором и наибольшая высота дерева пилота
+    private record Result(double treeMicros, double scanMicros, int maxHeight) {
+    }
+
+    private static Result measure(int flightsPerPilot) {
+        Random random = new Random(42);
+        IntervalTree[] trees = new IntervalTree[PILOTS];
+        long[][] starts = new long[PILOTS][flightsPerPilot];
+        long[][] ends = new long[PILOTS][flightsPerPilot];
+        long id = 0;
+        long horizon = Long.MAX_VALUE;
+        int maxHeight = 0;
+        for (int p = 0; p < PILOTS; p++) {
+            trees[p] = new IntervalTree();
+            // Рейсы пилота идут подряд: 1-4 часа в воздухе, 1-12 часов между рейсами
+            long time = random.nextInt(24 * 60);
+            for (int f = 0; f < flightsPerPilot; f++) {
+                long end = time + 60 + random.nextInt(180);
+                trees[p].insert(id++, time, end);
+                starts[p][f] = time;
+                ends[p][f] = end;
+                time = end + 60 + random.nextInt(11 * 60);
+            }
+            horizon = Math.min(horizon, time);
+            maxHeight = Math.max(maxHeight, trees[p].height());
+        }
+
+        // Прогрев JIT, чтобы замер не включал компиляцию
+        for (int i = 0; i < 50; i++) {
+            long departure = random.nextLong(horizon);
+            availableByTree(trees, departure, departure + 120);
+            availableByScan(starts, ends, departure, departure + 120);
+        }
+
+        long[] treeNanos = new long[CHECKS];
+        long[] scanNanos = new long[CHECKS];
+        for (int i = 0; i < CHECKS; i++) {
+            long departure = random.nextLong(horizon);
+            long arrival = departure + 60 + random.nextInt(180);
+
+            long t = System.nanoTime();
+            int byTree = availableByTree(trees, departure, arrival);
+            treeNanos[i] = System.nanoTime() - t;
+
+            t = System.nanoTime();
+            int byScan = availableByScan(starts, ends, departure, arrival);
+            scanNanos[i] = System.nanoTime() - t;
+
+            assertEquals(byScan, byTree, "Свободных пилотов на [" + departure + ", " + arrival + ")");
+        }
+        Arrays.sort(treeNanos);
+        Arrays.sort(scanNanos);
+        return new Result(treeNanos[CHECKS / 2] / 1e3, scanNanos[CHECKS / 2] / 1e3, maxHeight);
+    }
+
+    private static int availableByTree(IntervalTree[] trees, long departure, long arrival) {
+        int available = 0;
+        for (IntervalTree tree : trees) {
+            if (tree.findOverlap(departure - TURNAROUND, arrival + TURNAROUND, -1) < 0) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    private static int availableByScan(long[][] starts, long[][] ends, long departure, long arrival) {
+        int available = 0;
+        for (int p = 0; p < starts.length; p++) {
+            boolean free = true;
+            for (int f = 0; f < starts[p].length && free; f++) {
+                free = starts[p][f] >= arrival + TURNAROUND || ends[p][f] <= departure - TURNAROUND;
+            }
+            if (free) {
+                available++;
+            }
+        }
+        return available;
+    }
+}
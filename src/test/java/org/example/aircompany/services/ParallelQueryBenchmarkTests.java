@@ -0,0 +1,135 @@
+package org.example.aircompany.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Загрузка страницы из пяти независимых запросов: по очереди и через ParallelQueryService.
+ * Контекст Spring и БД не нужны — запрос имитируется задержкой, равной типичному обращению к БД.
+ * Проверяется, сколько запросов выполнялось одновременно; время загрузки только публикуется через TestReporter,
+ * чтобы результат не зависел от загрузки машины.
+ */
+class ParallelQueryBenchmarkTests {
+
+    private static final int QUERIES = 5;
+    private static final long ROUND_TRIP_MILLIS = 20;
+    private static final int RUNS = 30;
+
+    private static final int THREADS = 4;
+
+    private final ParallelQueryService service = new ParallelQueryService(THREADS, 100, 2_000);
+
+    // Сколько запросов выполняется сейчас и сколько выполнялось одновременно максимум
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        service.destroy();
+    }
+
+    @Test
+    void parallelFanOutOverlapsQueries(TestReporter reporter) throws Exception {
+        long[] sequential = new long[RUNS];
+        long[] parallel = new long[RUNS];
+
+        for (int i = 0; i < RUNS; i++) {
+            long t = System.nanoTime();
+            long sum = 0;
+            for (int q = 0; q < QUERIES; q++) {
+                sum += query(q).call();
+            }
+            sequential[i] = System.nanoTime() - t;
+            assertEquals(expectedSum(), sum);
+
+            t = System.nanoTime();
+            sum = 0;
+            try (ParallelQueryService.Scope scope = service.open()) {
+                @SuppressWarnings("unchecked")
+                Supplier<Long>[] results = new Supplier[QUERIES];
+                for (int q = 0; q < QUERIES; q++) {
+                    results[q] = scope.fork(query(q));
+                }
+                scope.join();
+                for (Supplier<Long> result : results) {
+                    sum += result.get();
+                }
+            }
+            parallel[i] = System.nanoTime() - t;
+            assertEquals(expectedSum(), sum);
+        }
+        Arrays.sort(sequential);
+        Arrays.sort(parallel);
+
+        reporter.publishEntry(QUERIES + " запросов по " + ROUND_TRIP_MILLIS + " мс", String.format(
+                "по очереди p50 = %.1f мс, параллельно (%d потока) p50 = %.1f мс",
+                sequential[RUNS / 2] / 1e6, THREADS, parallel[RUNS / 2] / 1e6));
+        // 5 запросов на 4 потоках — два "круга" вместо пяти: в каждом круге заняты все потоки
+        assertEquals(Math.min(THREADS, QUERIES), maxActive.get(),
+                "Запросы группы должны выполняться одновременно на всех потоках пула");
+    }
+
+    @Test
+    void slowQueryFailsGroupByDeadline(TestReporter reporter) throws Exception {
+        ParallelQueryService fast = new ParallelQueryService(2, 10, 50);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        try (ParallelQueryService.Scope scope = fast.open()) {
+            scope.fork(() -> {
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    cancelled.countDown();
+                }
+                return 1;
+            });
+            long t = System.nanoTime();
+            assertThrows(IllegalStateException.class, scope::join);
+            reporter.publishEntry("ожидание join", (System.nanoTime() - t) / 1_000_000 + " мс");
+            // Срок группы истек — зависший запрос прерывается, а не занимает поток пула дальше
+            assertTrue(cancelled.await(30, TimeUnit.SECONDS),
+                    "Запрос, не уложившийся в срок группы, должен быть отменен");
+        } finally {
+            fast.destroy();
+        }
+    }
+
+    @Test
+    void failureIsRethrownToCaller() {
+        try (ParallelQueryService.Scope scope = service.open()) {
+            scope.fork(query(0));
+            scope.fork(() -> {
+                throw new IllegalArgumentException("Самолет не найден");
+            });
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, scope::join);
+            assertEquals("Самолет не найден", e.getMessage());
+        }
+    }
+
+    private Callable<Long> query(long value) {
+        return () -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(ROUND_TRIP_MILLIS);
+            } finally {
+                active.decrementAndGet();
+            }
+            return value;
+        };
+    }
+
+    private static long expectedSum() {
+        return (long) QUERIES * (QUERIES - 1) / 2;
+    }
+}
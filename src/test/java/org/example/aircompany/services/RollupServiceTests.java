@@ -0,0 +1,197 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.model.Aircraft;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.model.RouteDayRollup;
+import org.example.aircompany.model.User;
+import org.example.aircompany.model.UserRole;
+import org.example.aircompany.repositories.AircraftDayRollupRepository;
+import org.example.aircompany.repositories.AircraftRepository;
+import org.example.aircompany.repositories.FlightRepository;
+import org.example.aircompany.repositories.RouteDayRollupRepository;
+import org.example.aircompany.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сводки аналитики: инкрементальный пересчет и компактизация по частям должны давать одни и те же строки.
+ * Рейсы теста летают по собственному направлению, чтобы не смешиваться с данными общей БД.
+ */
+@SpringBootTest
+class RollupServiceTests {
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private FlightService flightService;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private FlightRepository flightRepository;
+
+    @Autowired
+    private AircraftRepository aircraftRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RouteDayRollupRepository routeDayRollupRepository;
+
+    @Autowired
+    private AircraftDayRollupRepository aircraftDayRollupRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String departureCity;
+    private String arrivalCity;
+    private LocalDate day;
+    private Aircraft aircraft;
+    private final List<Flight> flights = new ArrayList<>();
+    private final List<User> passengers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        String suffix = Long.toString(System.nanoTime(), 36);
+        departureCity = "Сводка " + suffix;
+        arrivalCity = "Итог " + suffix;
+        day = LocalDate.now().plusDays(3);
+
+        aircraft = new Aircraft();
+        aircraft.setModel("Rollup test");
+        aircraft.setSeatCapacity(2);
+        aircraft.setStatus(Aircraft.AircraftStatus.active);
+        aircraft = aircraftRepository.save(aircraft);
+
+        // Два рейса в один день и один на следующий
+        flights.add(newFlight(suffix + "0", day.atTime(8, 0)));
+        flights.add(newFlight(suffix + "1", day.atTime(14, 0)));
+        flights.add(newFlight(suffix + "2", day.plusDays(1).atTime(9, 30)));
+
+        for (int i = 0; i < 3; i++) {
+            User passenger = new User();
+            passenger.setUsername("rollup_" + suffix + "_" + i);
+            passenger.setPasswordHash("-");
+            passenger.setRole(UserRole.passenger);
+            passengers.add(userRepository.save(passenger));
+        }
+        List<String> seats = seatInventoryService.getAllSeats(flights.get(0));
+        bookingService.createBookingForPassenger(passengers.get(0), flights.get(0), seats.get(0));
+        bookingService.createBookingForPassenger(passengers.get(1), flights.get(0), seats.get(1));
+        bookingService.createBookingForPassenger(passengers.get(2), flights.get(2), seats.get(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        String departureKey = Flight.cityKey(departureCity);
+        for (Flight flight : flights) {
+            jdbcTemplate.update("DELETE FROM flight_booking_rollups WHERE flight_id = ?", flight.getFlightId());
+            jdbcTemplate.update("DELETE FROM bookings WHERE flight_id = ?", flight.getFlightId());
+            flightRepository.deleteById(flight.getFlightId());
+            seatInventoryService.invalidate(flight.getFlightId());
+        }
+        jdbcTemplate.update("DELETE FROM route_day_rollups WHERE departure_city_key = ?", departureKey);
+        jdbcTemplate.update("DELETE FROM aircraft_day_rollups WHERE aircraft_id = ?", aircraft.getAircraftId());
+        aircraftRepository.deleteById(aircraft.getAircraftId());
+        userRepository.deleteAll(passengers);
+    }
+
+    @Test
+    void incrementalFlushMatchesCompaction() {
+        rollupService.flush();
+        List<String> incremental = snapshot();
+
+        assertEquals(List.of(
+                        "route " + day + " flights=2 seats=24 booked=2",
+                        "route " + day.plusDays(1) + " flights=1 seats=12 booked=1",
+                        "aircraft " + day + " flights=2 minutes=240",
+                        "aircraft " + day.plusDays(1) + " flights=1 minutes=120",
+                        "bookings " + flights.get(0).getFlightNumber() + " " + LocalDate.now() + " 2",
+                        "bookings " + flights.get(2).getFlightNumber() + " " + LocalDate.now() + " 1"),
+                incremental);
+
+        rollupService.compact();
+        assertEquals(incremental, snapshot(), "Компактизация разошлась с инкрементальным пересчетом");
+    }
+
+    @Test
+    void compactionRemovesStaleRows() {
+        rollupService.flush();
+
+        // Строка направления за день без рейсов (например, оставшаяся после записи в обход сервисов)
+        RouteDayRollup stale = new RouteDayRollup();
+        stale.setDepartureCityKey(Flight.cityKey(departureCity));
+        stale.setArrivalCityKey(Flight.cityKey(arrivalCity));
+        stale.setDepartureCity(departureCity);
+        stale.setArrivalCity(arrivalCity);
+        stale.setFlightDate(day.plusDays(5));
+        stale.setFlights(1);
+        stale.setUpdatedAt(LocalDateTime.now());
+        routeDayRollupRepository.save(stale);
+        // Рейс отменили UPDATE в обход сервиса — события не было
+        jdbcTemplate.update("UPDATE flights SET status = 'cancelled' WHERE flight_id = ?", flights.get(2).getFlightId());
+
+        rollupService.compact();
+
+        List<String> rows = snapshot();
+        assertTrue(rows.contains("route " + day + " flights=2 seats=24 booked=2"), rows.toString());
+        assertFalse(rows.stream().anyMatch(row -> row.startsWith("route " + day.plusDays(5))),
+                "Строка дня без рейсов осталась: " + rows);
+        assertFalse(rows.stream().anyMatch(row -> row.startsWith("route " + day.plusDays(1))),
+                "Строка дня с отмененным рейсом осталась: " + rows);
+    }
+
+    private Flight newFlight(String number, LocalDateTime departure) {
+        Flight flight = new Flight();
+        flight.setFlightNumber("RU" + number.substring(Math.max(0, number.length() - 8)));
+        flight.setDepartureCity(departureCity);
+        flight.setArrivalCity(arrivalCity);
+        flight.setDepartureTime(departure);
+        flight.setArrivalTime(departure.plusHours(2));
+        flight.setStatus(Flight.FlightStatus.scheduled);
+        flight.setAircraft(aircraft);
+        return flightService.saveFlight(flight);
+    }
+
+    // Строки сводок теста без id и времени обновления
+    private List<String> snapshot() {
+        List<String> rows = new ArrayList<>();
+        String departureKey = Flight.cityKey(departureCity);
+        for (RouteDayRollup row : rollupService.getRouteLoad(day, day.plusDays(10))) {
+            if (row.getDepartureCityKey().equals(departureKey)) {
+                rows.add("route " + row.getFlightDate() + " flights=" + row.getFlights()
+                        + " seats=" + row.getSeats() + " booked=" + row.getBookedSeats());
+            }
+        }
+        for (LocalDate date = day; date.isBefore(day.plusDays(2)); date = date.plusDays(1)) {
+            aircraftDayRollupRepository.findByAircraftIdAndFlightDate(aircraft.getAircraftId(), date)
+                    .ifPresent(row -> rows.add("aircraft " + row.getFlightDate() + " flights=" + row.getFlights()
+                            + " minutes=" + row.getBlockMinutes()));
+        }
+        for (Flight flight : flights) {
+            rollupService.getFlightBookings(flight.getFlightId()).forEach(row -> rows.add("bookings "
+                    + row.getFlightNumber() + " " + row.getBookingDay() + " " + row.getBookings()));
+        }
+        return rows;
+    }
+}
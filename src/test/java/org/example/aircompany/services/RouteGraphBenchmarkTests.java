@@ -0,0 +1,136 @@
+package org.example.aircompany.services;
+
+import org.example.aircompany.events.FlightSnapshot;
+import org.example.aircompany.model.Flight;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Замер времени поиска маршрутов с пересадками на графе из 100k+ рейсов.
+ * Контекст Spring не нужен — граф заполняется синтетическим расписанием.
+ * Замеры публикуются через TestReporter (в отчете JUnit), в сообщениях проверок — только причина падения.
+ */
+class RouteGraphBenchmarkTests {
+
+    private static final int CITIES = 200;
+    private static final int DAYS = 30;
+    private static final int FLIGHTS = 120_000;
+    private static final int SEARCHES = 2_000;
+
+    private static final Duration MIN_LAYOVER = Duration.ofMinutes(45);
+    private static final Duration MAX_LAYOVER = Duration.ofHours(6);
+
+    @Test
+    void connectionSearchLatency(TestReporter reporter) {
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+        RouteGraph graph = new RouteGraph();
+        long buildStart = System.nanoTime();
+        for (long id = 1; id <= FLIGHTS; id++) {
+            int from = random.nextInt(CITIES);
+            int to = (from + 1 + random.nextInt(CITIES - 1)) % CITIES;
+            LocalDateTime departure = start.plusMinutes(random.nextInt(DAYS * 24 * 60));
+            LocalDateTime arrival = departure.plusMinutes(60 + random.nextInt(180));
+            graph.put(new FlightSnapshot(id, "SU" + id, city(from), city(to), departure, arrival,
+                    Flight.FlightStatus.scheduled, null, null));
+        }
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+        assertEquals(FLIGHTS, graph.size());
+
+        // Прогрев JIT, чтобы замер не включал компиляцию
+        for (int i = 0; i < 200; i++) {
+            search(graph, random, start);
+        }
+
+        long[] latencies = new long[SEARCHES];
+        int withResults = 0;
+        for (int i = 0; i < SEARCHES; i++) {
+            long t = System.nanoTime();
+            List<List<FlightSnapshot>> found = search(graph, random, start);
+            latencies[i] = System.nanoTime() - t;
+            if (!found.isEmpty()) {
+                withResults++;
+            }
+            for (List<FlightSnapshot> itinerary : found) {
+                assertConnected(itinerary);
+            }
+        }
+        Arrays.sort(latencies);
+
+        reporter.publishEntry("граф", String.format("%d рейсов, %d городов, построен за %d мс",
+                FLIGHTS, CITIES, buildMillis));
+        reporter.publishEntry("поиск", String.format("%d запросов, до 2 пересадок: p50 = %.2f мс, p99 = %.2f мс, " +
+                        "max = %.2f мс, с результатами: %d",
+                SEARCHES,
+                latencies[SEARCHES / 2] / 1e6,
+                latencies[SEARCHES * 99 / 100] / 1e6,
+                latencies[SEARCHES - 1] / 1e6,
+                withResults));
+
+        assertTrue(withResults > 0, "На плотном расписании не нашлось ни одного маршрута с пересадками из "
+                + SEARCHES + " запросов");
+    }
+
+    @Test
+    void boundedSearchMatchesFullSort() {
+        Random random = new Random(7);
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 0, 0);
+        RouteGraph graph = new RouteGraph();
+        // Меньше городов — больше маршрутов на запрос, граница кучи отсекает большую часть
+        for (long id = 1; id <= 20_000; id++) {
+            int from = random.nextInt(20);
+            int to = (from + 1 + random.nextInt(19)) % 20;
+            LocalDateTime departure = start.plusMinutes(random.nextInt(3 * 24 * 60));
+            graph.put(new FlightSnapshot(id, "SU" + id, city(from), city(to), departure,
+                    departure.plusMinutes(60 + random.nextInt(180)), Flight.FlightStatus.scheduled, null, null));
+        }
+
+        for (int i = 0; i < 50; i++) {
+            Set<String> origins = Set.of(Flight.cityKey(city(random.nextInt(20))));
+            Set<String> destinations = Set.of(Flight.cityKey(city(random.nextInt(20))));
+            LocalDateTime day = start.plusDays(random.nextInt(2));
+            // Без ограничения куча вмещает все маршруты и ничего не отсекает
+            List<List<FlightSnapshot>> all = graph.findConnections(origins, destinations, day, day.plusDays(1),
+                    MIN_LAYOVER, MAX_LAYOVER, 2, Integer.MAX_VALUE);
+            List<List<FlightSnapshot>> top = graph.findConnections(origins, destinations, day, day.plusDays(1),
+                    MIN_LAYOVER, MAX_LAYOVER, 2, 30);
+            assertEquals(all.subList(0, Math.min(30, all.size())), top, origins + " -> " + destinations + ", " + day);
+        }
+    }
+
+    private static List<List<FlightSnapshot>> search(RouteGraph graph, Random random, LocalDateTime start) {
+        int from = random.nextInt(CITIES);
+        int to = (from + 1 + random.nextInt(CITIES - 1)) % CITIES;
+        LocalDateTime day = start.plusDays(random.nextInt(DAYS - 1));
+        return graph.findConnections(Set.of(Flight.cityKey(city(from))), Set.of(Flight.cityKey(city(to))),
+                day, day.plusDays(1), MIN_LAYOVER, MAX_LAYOVER, 2, 30);
+    }
+
+    // Каждый следующий рейс вылетает из города прилета предыдущего с допустимой пересадкой
+    private static void assertConnected(List<FlightSnapshot> itinerary) {
+        List<FlightSnapshot> legs = new ArrayList<>(itinerary);
+        for (int i = 1; i < legs.size(); i++) {
+            FlightSnapshot previous = legs.get(i - 1);
+            FlightSnapshot next = legs.get(i);
+            assertEquals(previous.arrivalCityKey(), next.departureCityKey());
+            Duration layover = Duration.between(previous.arrivalTime(), next.departureTime());
+            assertTrue(layover.compareTo(MIN_LAYOVER) >= 0 && layover.compareTo(MAX_LAYOVER) <= 0);
+        }
+    }
+
+    private static String city(int index) {
+        return "Город " + index;
+    }
+}
@@ -0,0 +1,282 @@
+package org.example.aircompany.sql;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.aircompany.model.Aircraft;
+import org.example.aircompany.model.Booking;
+import org.example.aircompany.model.Flight;
+import org.example.aircompany.model.FlightLog;
+import org.example.aircompany.model.User;
+import org.example.aircompany.model.UserRole;
+import org.example.aircompany.repositories.AircraftRepository;
+import org.example.aircompany.repositories.BookingRepository;
+import org.example.aircompany.repositories.FlightLogRepository;
+import org.example.aircompany.repositories.FlightRepository;
+import org.example.aircompany.repositories.UserRepository;
+import org.example.aircompany.dto.UserDeletionResult;
+import org.example.aircompany.services.SeatInventoryService;
+import org.example.aircompany.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Защита от N+1: у каждой страницы есть бюджет SQL-запросов, не зависящий от объема данных.
+ * Данных создается заметно больше бюджета, поэтому догрузка связей по одной строке его превысит.
+ * Фактическое число запросов публикуется через TestReporter.
+ */
+@SpringBootTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=org.example.aircompany.sql.SqlStatementCounter")
+class SqlStatementBudgetTests {
+
+    private static final int FLIGHTS = 6;
+    private static final int PASSENGERS = 12;
+    private static final int IDLE_PILOTS = 5;
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private AircraftRepository aircraftRepository;
+
+    @Autowired
+    private FlightRepository flightRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private FlightLogRepository flightLogRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private MockMvc mockMvc;
+    private SqlStatementCounter sqlStatements;
+    private TestReporter reporter;
+
+    private Aircraft aircraft;
+    private User pilot;
+    private final List<User> passengers = new ArrayList<>();
+    private final List<User> idlePilots = new ArrayList<>();
+    private final List<Flight> flights = new ArrayList<>();
+    private final List<Booking> bookings = new ArrayList<>();
+
+    @BeforeEach
+    void setUp(TestReporter reporter) {
+        this.reporter = reporter;
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+        sqlStatements = SqlStatementCounter.of(entityManagerFactory);
+        String suffix = Long.toString(System.nanoTime(), 36);
+
+        aircraft = new Aircraft();
+        aircraft.setModel("Budget test");
+        aircraft.setStatus(Aircraft.AircraftStatus.active);
+        aircraft = aircraftRepository.save(aircraft);
+
+        pilot = newUser("budget_pilot_" + suffix, UserRole.pilot);
+        for (int i = 0; i < PASSENGERS; i++) {
+            passengers.add(newUser("budget_" + suffix + "_" + i, UserRole.passenger));
+        }
+        for (int i = 0; i < IDLE_PILOTS; i++) {
+            idlePilots.add(newUser("budget_idle_pilot_" + suffix + "_" + i, UserRole.pilot));
+        }
+
+        LocalDateTime departure = LocalDate.now().plusDays(2).atTime(10, 0);
+        for (int i = 0; i < FLIGHTS; i++) {
+            Flight flight = new Flight();
+            flight.setFlightNumber("BT" + suffix.substring(Math.max(0, suffix.length() - 6)) + i);
+            flight.setDepartureCity("Бюджетск");
+            flight.setArrivalCity("Запросово");
+            flight.setDepartureTime(departure.plusHours(i));
+            flight.setArrivalTime(departure.plusHours(i + 2));
+            flight.setStatus(i % 2 == 0 ? Flight.FlightStatus.scheduled : Flight.FlightStatus.completed);
+            flight.setAircraft(aircraft);
+            flight.setPilot(pilot);
+            flights.add(flightRepository.save(flight));
+        }
+
+        for (int i = 0; i < PASSENGERS; i++) {
+            Booking booking = new Booking();
+            booking.setUser(passengers.get(i));
+            booking.setFlight(flights.get(i % FLIGHTS));
+            booking.setSeatNumber((i / FLIGHTS + 1) + "A");
+            booking.setStatus(Booking.BookingStatus.confirmed);
+            bookings.add(bookingRepository.save(booking));
+        }
+        // Второе бронирование первого пассажира — его список из нескольких рейсов
+        for (int i = 1; i < FLIGHTS; i++) {
+            Booking booking = new Booking();
+            booking.setUser(passengers.get(0));
+            booking.setFlight(flights.get(i));
+            booking.setSeatNumber("9B");
+            booking.setStatus(Booking.BookingStatus.confirmed);
+            bookings.add(bookingRepository.save(booking));
+        }
+
+        for (Flight flight : flights) {
+            if (flight.getStatus() == Flight.FlightStatus.completed) {
+                FlightLog log = new FlightLog();
+                log.setFlight(flight);
+                log.setPilot(pilot);
+                log.setTechnicalCheck(FlightLog.TechnicalCheck.pass);
+                flightLogRepository.save(log);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Flight flight : flights) {
+            jdbcTemplate.update("DELETE FROM flight_logs WHERE flight_id = ?", flight.getFlightId());
+            jdbcTemplate.update("DELETE FROM bookings WHERE flight_id = ?", flight.getFlightId());
+            flightRepository.deleteById(flight.getFlightId());
+            seatInventoryService.invalidate(flight.getFlightId());
+        }
+        userRepository.deleteAll(passengers);
+        userRepository.deleteAll(idlePilots);
+        userRepository.delete(pilot);
+        aircraftRepository.deleteById(aircraft.getAircraftId());
+    }
+
+    @Test
+    void bookingListForStaff() throws Exception {
+        assertWithinBudget(1, get("/booking-staff/bookings"), "booking_staff", "booking_staff");
+    }
+
+    @Test
+    void bookingEditForm() throws Exception {
+        // бронирование + пилот рейса, все рейсы, все пользователи, номера занятых мест
+        assertWithinBudget(6, get("/booking-staff/bookings/edit/{id}", bookings.get(0).getBookingId()),
+                "booking_staff", "booking_staff");
+    }
+
+    @Test
+    void flightListForStaff() throws Exception {
+        assertWithinBudget(1, get("/booking-staff/flights"), "booking_staff", "booking_staff");
+    }
+
+    @Test
+    void aircraftListForStaff() throws Exception {
+        assertWithinBudget(1, get("/booking-staff/aircrafts"), "booking_staff", "booking_staff");
+    }
+
+    @Test
+    void flightEditForm() throws Exception {
+        // рейс с самолетом и пилотом, все самолеты (кэш запросов), пилоты; свободные отбираются
+        // по расписанию в памяти (при первом обращении — один запрос на построение FlightScheduleIndex)
+        assertWithinBudget(4, get("/booking-staff/flights/edit/{id}", flights.get(0).getFlightId()),
+                "booking_staff", "booking_staff");
+    }
+
+    @Test
+    void userListForAdmin() throws Exception {
+        assertWithinBudget(1, get("/admin/users"), "admin", "admin");
+    }
+
+    @Test
+    void statsForAdmin() throws Exception {
+        // при первой загрузке счетчиков: COUNT по ролям, по статусам самолетов, рейсам, бронированиям, журналам
+        assertWithinBudget(5, get("/admin/stats"), "admin", "admin");
+    }
+
+    @Test
+    void flightLogListForPilot() throws Exception {
+        // текущий пользователь (с данными пассажира) + журналы
+        assertWithinBudget(3, get("/pilot/logs"), pilot.getUsername(), "pilot");
+    }
+
+    @Test
+    void pilotFlightsAwaitingLogs() throws Exception {
+        // текущий пользователь (с данными пассажира) + завершенные рейсы без журналов одним запросом
+        assertWithinBudget(3, get("/pilot/flights"), pilot.getUsername(), "pilot");
+    }
+
+    @Test
+    void passengerBookingList() throws Exception {
+        // текущий пользователь (с данными пассажира) + бронирования с рейсами
+        assertWithinBudget(3, get("/passenger/bookings"), passengers.get(0).getUsername(), "passenger");
+    }
+
+    @Test
+    void passengerFlightSearch() throws Exception {
+        // индекс городов (2 запроса при первом обращении) + поиск с местами + пользователь + его бронирования
+        assertWithinBudget(6,
+                get("/search/flights")
+                        .param("departureCity", "Бюджетск")
+                        .param("date", flights.get(0).getDepartureTime().toLocalDate().toString()),
+                passengers.get(0).getUsername(), "passenger");
+    }
+
+    @Test
+    void setBasedUserDeletion() {
+        List<Long> ids = new ArrayList<>();
+        passengers.forEach(passenger -> ids.add(passenger.getUserId()));
+        ids.add(pilot.getUserId());
+
+        sqlStatements.reset();
+        UserDeletionResult result = userService.deleteUsersByIds(ids);
+        int statements = sqlStatements.count();
+        reporter.publishEntry("SQL-запросов", statements + " при удалении " + ids.size() + " пользователей (бюджет 9)");
+
+        // выборка пользователей, рейсы с бронированиями, DELETE бронирований, рейсы пилотов,
+        // UPDATE рейсов, DELETE истории ролей, журналов, пассажиров, пользователей
+        assertTrue(statements <= 9, "Удаление пользователей должно выполняться запросами по множеству, а не по строке: " +
+                statements + " > 9");
+        assertEquals(ids.size(), result.getUsers());
+        assertEquals(bookings.size(), result.getBookings());
+        assertEquals(FLIGHTS, result.getUnassignedFlights());
+    }
+
+    private void assertWithinBudget(int budget, MockHttpServletRequestBuilder request,
+                                    String username, String authority) throws Exception {
+        sqlStatements.reset();
+        mockMvc.perform(request.with(user(username).authorities(new SimpleGrantedAuthority(authority))))
+                .andExpect(status().isOk());
+        int statements = sqlStatements.count();
+        reporter.publishEntry("SQL-запросов", statements + " (бюджет " + budget + ")");
+
+        assertTrue(statements <= budget,
+                "Превышен бюджет SQL-запросов: " + statements + " > " + budget + " — вероятно, N+1");
+    }
+
+    private User newUser(String username, UserRole role) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPasswordHash("-");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+}
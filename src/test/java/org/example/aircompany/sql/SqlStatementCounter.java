@@ -0,0 +1,49 @@
+package org.example.aircompany.sql;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Считает SQL-запросы, которые Hibernate отправляет в БД.
+ * Подключается в тестах свойством hibernate.session_factory.statement_inspector: Hibernate создает
+ * свой экземпляр для каждой фабрики сессий, поэтому у каждого тестового контекста свой счетчик (см. of).
+ *
+ * Считаются только запросы потока, вызвавшего reset, и потоков пула ParallelQueryService,
+ * которые выполняют запросы по его поручению. Запросы фоновых задач (@Scheduled) и других потоков
+ * в счет не попадают.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final String PARALLEL_QUERY_THREAD = "parallel-query-";
+
+    private final AtomicInteger count = new AtomicInteger();
+    private volatile Thread owner;
+
+    public static SqlStatementCounter of(EntityManagerFactory entityManagerFactory) {
+        return (SqlStatementCounter) entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getSessionFactoryOptions()
+                .getStatementInspector();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Thread current = Thread.currentThread();
+        if (current == owner || current.getName().startsWith(PARALLEL_QUERY_THREAD)) {
+            count.incrementAndGet();
+        }
+        return sql;
+    }
+
+    // Начинает подсчет заново для текущего потока
+    public void reset() {
+        owner = Thread.currentThread();
+        count.set(0);
+    }
+
+    public int count() {
+        return count.get();
+    }
+}